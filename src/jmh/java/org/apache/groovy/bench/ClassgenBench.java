@@ -0,0 +1,93 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.groovy.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.ParallelCompilationUnit;
+import org.codehaus.groovy.control.Phases;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Class generation of a module of many classes, with and without parallel classgen. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ClassgenBench {
+
+  static final int CLASSES = 100;
+
+  @Param({"false", "true"})
+  public boolean parallelClassgen;
+
+  private String[] sources;
+
+  private CompilerConfiguration configuration;
+
+  @Setup
+  public void setup() {
+    sources = new String[CLASSES];
+    for (int i = 0; i < CLASSES; i++) {
+      StringBuilder source = new StringBuilder("class C").append(i);
+      if (i > 0) source.append(" extends C").append(i - 1);
+      source.append(" {\n");
+      for (int m = 0; m < 10; m++) {
+        source
+            .append("  def m")
+            .append(m)
+            .append("(x, List<Integer> xs) {\n")
+            .append("    def r = x instanceof String ? x.size() : 0\n")
+            .append("    for (y in xs) { if (y > ")
+            .append(m)
+            .append(") r += y; else r = r ?: y }\n")
+            .append("    try { r += xs.find { it > r } ?: 0 } catch (e) { r = -1 }\n")
+            .append("    r > 10 ? new ArrayList(xs) : xs.collect { it * r }\n")
+            .append("  }\n");
+      }
+      sources[i] = source.append("}\n").toString();
+    }
+    configuration = new CompilerConfiguration();
+    configuration
+        .getOptimizationOptions()
+        .put(CompilerConfiguration.PARALLEL_CLASSGEN, parallelClassgen);
+  }
+
+  @Benchmark
+  public Object compile() {
+    CompilationUnit unit = new ParallelCompilationUnit(configuration);
+    for (int i = 0; i < sources.length; i++) {
+      unit.addSource("C" + i + ".groovy", sources[i]);
+    }
+    unit.compile(Phases.CLASS_GENERATION);
+    return unit.getClasses();
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.groovy.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.codehaus.groovy.control.AnalysisCompilationUnit;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end compilation of representative sources up to class generation, and their analysis only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CompilationBench {
+
+  static final String SCRIPT =
+      "def items = (1..20).collect { [id: it, name: \"item$it\"] }\n"
+          + "def evens = items.findAll { it.id % 2 == 0 }*.name\n"
+          + "println evens.join(', ')\n";
+
+  static final String CLASSES =
+      "import groovy.transform.*\n"
+          + "@ToString @EqualsAndHashCode\n"
+          + "class Person {\n"
+          + "  String name\n"
+          + "  int age\n"
+          + "  boolean isAdult() { age >= 18 }\n"
+          + "}\n"
+          + "class Registry {\n"
+          + "  private final List<Person> people = []\n"
+          + "  void add(String name, int age) { people << new Person(name: name, age: age) }\n"
+          + "  List<String> adults() { people.findAll { it.adult }.collect { it.name }.sort() }\n"
+          + "}\n";
+
+  static final String STATIC =
+      "import groovy.transform.CompileStatic\n"
+          + "@CompileStatic\n"
+          + "class Fibonacci {\n"
+          + "  static long of(int n) {\n"
+          + "    long a = 0, b = 1\n"
+          + "    for (int i = 0; i < n; i++) { long t = a + b; a = b; b = t }\n"
+          + "    return a\n"
+          + "  }\n"
+          + "  static Map<Integer, Long> table(int size) {\n"
+          + "    Map<Integer, Long> result = [:]\n"
+          + "    (0..<size).each { int i -> result[i] = of(i) }\n"
+          + "    return result\n"
+          + "  }\n"
+          + "}\n";
+
+  @Param({"script", "classes", "static"})
+  public String source;
+
+  private String text;
+
+  @Setup
+  public void setup() {
+    switch (source) {
+      case "script":
+        text = SCRIPT;
+        break;
+      case "classes":
+        text = CLASSES;
+        break;
+      default:
+        text = STATIC;
+    }
+  }
+
+  @Benchmark
+  public Object compile() {
+    CompilationUnit unit = new CompilationUnit(new CompilerConfiguration());
+    unit.addSource("Source.groovy", text);
+    unit.compile(Phases.CLASS_GENERATION);
+    return unit.getClasses();
+  }
+
+  @Benchmark
+  public Object analyze() {
+    CompilationUnit unit = new AnalysisCompilationUnit(new CompilerConfiguration());
+    unit.addSource("Source.groovy", text);
+    unit.compile();
+    return unit.getAST();
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.groovy.bench;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.runtime.execution.ScriptPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Repeated evaluation of a compiled rule, with a new script instance and binding per evaluation and
+ * with a {@link ScriptPool}. Run with {@code -prof gc} to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ScriptPoolBench {
+
+  static final String RULE = "amount > limit ? amount - limit : 0";
+
+  private Class<? extends Script> scriptClass;
+  private ScriptPool pool;
+  private final Integer amount = 1200;
+  private final Integer limit = 1000;
+
+  @Setup
+  public void setup() {
+    scriptClass = new GroovyShell().parse(RULE).getClass();
+    pool = new ScriptPool(scriptClass, 1);
+  }
+
+  @Benchmark
+  public Object fresh() {
+    Binding binding = new Binding();
+    binding.setVariable("amount", amount);
+    binding.setVariable("limit", limit);
+    return InvokerHelper.createScript(scriptClass, binding).run();
+  }
+
+  @Benchmark
+  public Object pooled() {
+    try (ScriptPool.PooledScript script = pool.acquire()) {
+      script.setVariable("amount", amount);
+      script.setVariable("limit", limit);
+      return script.run();
+    }
+  }
+}
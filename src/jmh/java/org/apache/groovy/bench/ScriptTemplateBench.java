@@ -0,0 +1,103 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.groovy.bench;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.runtime.execution.ScriptTemplateCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compilation of expressions differing only in their literals, each to a class of its own and with
+ * a {@link ScriptTemplateCompiler}, which compiles one class for all of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ScriptTemplateBench {
+
+  private GroovyShell shell;
+  private ScriptTemplateCompiler compiler;
+  private int variant;
+
+  @Setup
+  public void setup() {
+    shell = new GroovyShell();
+    compiler = new ScriptTemplateCompiler(new CompilerConfiguration());
+    checkLiteralTypes();
+  }
+
+  /**
+   * Fails unless variants whose literals only differ in the type of their value evaluate as they do
+   * compiled on their own, so that the benchmark does not measure a compiler giving wrong results.
+   */
+  private void checkLiteralTypes() {
+    Map<String, Object> variables = Collections.singletonMap("x", 2_000_000_000L);
+    String[][] variants = {{"x > 100", "x > 10000000000"}, {"0.1 + 0.2", "0.1d + 0.2d"}};
+    for (String[] sameTokens : variants) {
+      for (String variant : sameTokens) {
+        Object expected = new GroovyShell(new Binding(variables)).evaluate(variant);
+        Object actual = compiler.compile(variant).evaluate(variables);
+        if (!Objects.equals(expected, actual)) {
+          throw new IllegalStateException(
+              variant + " evaluates to " + actual + ", not " + expected);
+        }
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    compiler.close();
+  }
+
+  private String nextVariant() {
+    variant += 1;
+    return "amount > " + variant + " && country == 'C" + variant + "'";
+  }
+
+  @Benchmark
+  public Object compileEach() {
+    return shell.parse(nextVariant());
+  }
+
+  @Benchmark
+  public Object compileTemplate() {
+    return compiler.compile(nextVariant());
+  }
+}
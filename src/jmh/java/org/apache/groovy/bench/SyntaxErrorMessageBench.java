@@ -0,0 +1,155 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.groovy.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.groovy.control.CoalescingErrorCollector;
+import org.codehaus.groovy.control.CoalescingErrorCollector.MoreErrorsMessage;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.syntax.SyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Resolution of the reported error positions in {@link SyntaxErrorMessage} for a file with many
+ * errors, mixing the EOF, quoted token and closing brace heuristics, and the same errors collected
+ * by a {@link CoalescingErrorCollector}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SyntaxErrorMessageBench {
+
+  @Param({"10", "100"})
+  public int errors;
+
+  private String text;
+
+  private CompilerConfiguration config;
+
+  private SourceUnit source;
+
+  private String[] messages;
+
+  private int[] lines;
+
+  @Setup
+  public void setup() {
+    messages = new String[errors];
+    lines = new int[errors];
+    for (int i = 0; i < errors; i++) {
+      lines[i] = i * 4 + 2;
+      switch (i % 3) {
+        case 0:
+          messages[i] = "Unexpected input: '(' @ line " + lines[i];
+          break;
+        case 1:
+          messages[i] = "Unexpected input: '}\\n' @ line " + (lines[i] + 1);
+          lines[i]++;
+          break;
+        default:
+          messages[i] = "Unexpected character: '\\n' @ line " + lines[i];
+      }
+    }
+    text = text(errors);
+    config = new CompilerConfiguration();
+    config.setTolerance(Integer.MAX_VALUE);
+    source = new SourceUnit("Errors.groovy", text, config, null, new ErrorCollector(config));
+    checkCoalescing();
+  }
+
+  /** Four lines per method, the second one missing its closing parenthesis. */
+  private static String text(int methods) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < methods; i++) {
+      text.append("def method").append(i).append("() {\n");
+      text.append("  def value = foo(").append(i).append("\n");
+      text.append("}\n\n");
+    }
+    return text.toString();
+  }
+
+  /** Fails if the coalescing collector reports the wrong errors. */
+  private void checkCoalescing() {
+    // the brace error is moved up to line 2, the next one still follows on from it
+    String brace = "Unexpected input: '}\\n' @ line ";
+    check(new int[] {3, 12}, new String[] {brace + 3, brace + 12}, 1);
+    // the same message outside of the region of the first one is another error
+    check(new int[] {22, 62}, new String[] {"Missing ')'", "Missing ')'"}, 2);
+    // errors beyond the cap are counted by one message
+    int[] lines = {2, 22, 42, 62, 82, 93, 95, 97};
+    String[] messages = new String[lines.length];
+    for (int i = 0; i < lines.length; i++) messages[i] = "Unexpected input: '" + i + "'";
+    ErrorCollector collector = check(lines, messages, 6);
+    String more = ((MoreErrorsMessage) collector.getError(5)).getMessage();
+    if (!more.equals("3 more errors")) throw new IllegalStateException(more);
+  }
+
+  private ErrorCollector check(int[] lines, String[] messages, int reported) {
+    ErrorCollector collector = new CoalescingErrorCollector(config);
+    SourceUnit source = new SourceUnit("Check.groovy", text(25), config, null, collector);
+    for (int i = 0; i < lines.length; i++) {
+      collector.addError(
+          new SyntaxErrorMessage(new SyntaxException(messages[i], lines[i], 3), source));
+    }
+    if (collector.getErrorCount() != reported) {
+      throw new IllegalStateException(
+          collector.getErrorCount() + " errors reported, expected " + reported);
+    }
+    return collector;
+  }
+
+  @Benchmark
+  public void resolve(Blackhole blackhole) {
+    List<SyntaxErrorMessage> result = new ArrayList<>(errors);
+    for (int i = 0; i < errors; i++) {
+      result.add(new SyntaxErrorMessage(new SyntaxException(messages[i], lines[i], 3), source));
+    }
+    blackhole.consume(result);
+  }
+
+  @Benchmark
+  public ErrorCollector coalesce() {
+    ErrorCollector collector = new CoalescingErrorCollector(config);
+    SourceUnit source = new SourceUnit("Errors.groovy", text, config, null, collector);
+    for (int i = 0; i < errors; i++) {
+      collector.addError(
+          new SyntaxErrorMessage(new SyntaxException(messages[i], lines[i], 3), source));
+    }
+    return collector;
+  }
+}
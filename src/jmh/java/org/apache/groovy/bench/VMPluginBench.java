@@ -0,0 +1,75 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.groovy.bench;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.groovy.vmplugin.VMPlugin;
+import org.codehaus.groovy.vmplugin.VMPluginFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Access to the {@link VMPlugin} and dispatch through its invokespecial handles. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class VMPluginBench {
+
+  public interface Greeter {
+    default String greet(String name) {
+      return "Hello, " + name;
+    }
+  }
+
+  public static class DefaultGreeter implements Greeter {}
+
+  private static final Object[] ARGS = {"Groovy"};
+
+  private VMPlugin plugin;
+
+  private Object handle;
+
+  @Setup
+  public void setup() throws NoSuchMethodException {
+    plugin = VMPluginFactory.getPlugin();
+    Method greet = Greeter.class.getMethod("greet", String.class);
+    handle = plugin.getInvokeSpecialHandle(greet, new DefaultGreeter());
+  }
+
+  @Benchmark
+  public VMPlugin getPlugin() {
+    return VMPluginFactory.getPlugin();
+  }
+
+  @Benchmark
+  public Object invokeHandle() throws Throwable {
+    return plugin.invokeHandle(handle, ARGS);
+  }
+}
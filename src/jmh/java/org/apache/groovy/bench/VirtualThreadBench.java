@@ -0,0 +1,103 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.groovy.bench;
+
+import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.runtime.execution.ConcurrentScriptExecutor;
+import org.codehaus.groovy.runtime.execution.ScriptPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent evaluations of a script which blocks for a millisecond, run by a {@link
+ * ConcurrentScriptExecutor} on virtual threads and on as many platform threads. Each operation
+ * evaluates the script {@code concurrency} times at once, so the throughput in evaluations is the
+ * score times {@code concurrency}. The receivers alternate so that the call sites of the script
+ * miss their cache while other threads call through them. The forks trace virtual threads parking
+ * while pinned. Virtual threads blocked on monitors are not traced; see {@link
+ * ConcurrentScriptExecutor}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+@State(Scope.Benchmark)
+public class VirtualThreadBench {
+
+  static final String SCRIPT =
+      "Thread.sleep(1)\n"
+          + "def receiver = id % 3 == 0 ? 'x' * id : id % 3 == 1 ? [id] * 2 : (id as BigDecimal)\n"
+          + "receiver.toString().size() + receiver.hashCode()\n";
+
+  @Param({"virtual", "platform"})
+  public String threads;
+
+  @Param({"64", "1024"})
+  public int concurrency;
+
+  private ConcurrentScriptExecutor executor;
+  private List<Map<String, Object>> variables;
+
+  @Setup
+  public void setup() {
+    CompilerConfiguration configuration = new CompilerConfiguration();
+    Class<? extends Script> scriptClass = new GroovyShell(configuration).parse(SCRIPT).getClass();
+    ScriptPool pool = new ScriptPool(scriptClass, 0);
+    executor =
+        "virtual".equals(threads)
+            ? ConcurrentScriptExecutor.withVirtualThreads(pool)
+            : ConcurrentScriptExecutor.withPlatformThreads(pool, concurrency);
+    variables = new ArrayList<>(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      variables.add(Map.of("id", i));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.close();
+  }
+
+  @Benchmark
+  public Object evaluate() {
+    CompletableFuture<?>[] results = new CompletableFuture<?>[concurrency];
+    for (int i = 0; i < concurrency; i++) {
+      results[i] = executor.submit(variables.get(i));
+    }
+    return CompletableFuture.allOf(results).join();
+  }
+}
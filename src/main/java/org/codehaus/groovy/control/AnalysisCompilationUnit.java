@@ -0,0 +1,113 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.control;
+
+import groovy.lang.GroovyClassLoader;
+import java.security.CodeSource;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.classgen.ClassCompletionVerifier;
+import org.codehaus.groovy.classgen.ExtendedVerifier;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.classgen.Verifier;
+import org.codehaus.groovy.jfr.GroovyEvents;
+import org.codehaus.groovy.syntax.RuntimeParserException;
+import org.codehaus.groovy.syntax.SyntaxException;
+
+/**
+ * Compilation unit for live diagnostics, which never goes past {@link
+ * Phases#INSTRUCTION_SELECTION}: sources are parsed, resolved, transformed and type checked, but no
+ * bytecode is generated and nothing is written to the target directory. The verifiers that normally
+ * run at the start of class generation run at the end of instruction selection instead, so the unit
+ * reports the same errors as a full compile. The ASTs stay available through {@link #getAST()}. The
+ * {@link CancellationToken} of the configuration is checked between phases.
+ */
+public final class AnalysisCompilationUnit extends CompilationUnit {
+
+  public AnalysisCompilationUnit(CompilerConfiguration configuration) {
+    this(configuration, null, null);
+  }
+
+  public AnalysisCompilationUnit(
+      CompilerConfiguration configuration, CodeSource codeSource, GroovyClassLoader loader) {
+    this(configuration, codeSource, loader, null);
+  }
+
+  public AnalysisCompilationUnit(
+      CompilerConfiguration configuration,
+      CodeSource codeSource,
+      GroovyClassLoader loader,
+      GroovyClassLoader transformLoader) {
+    super(configuration, codeSource, loader, transformLoader);
+    if (getConfiguration().isCoalesceErrorsEnabled()) {
+      errorCollector = new CoalescingErrorCollector(getConfiguration());
+    }
+    addPhaseOperation(
+        new IPrimaryClassNodeOperation() {
+          @Override
+          public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+            verify(source, classNode);
+          }
+
+          @Override
+          public boolean needSortedInput() {
+            return true;
+          }
+        },
+        Phases.INSTRUCTION_SELECTION);
+    CancellationToken.addChecks(this);
+    // does nothing unless -Dgroovy.jfr=true
+    GroovyEvents.addPhaseEvents(this);
+  }
+
+  /**
+   * Adds an operation, checking the {@link CancellationToken} before each class it processes if it
+   * is a compilation customizer.
+   */
+  @Override
+  public void addPhaseOperation(IPrimaryClassNodeOperation operation, int phase) {
+    super.addPhaseOperation(CancellationToken.checked(this, operation, phase), phase);
+  }
+
+  /**
+   * Compiles the sources up to the given phase, but at most through {@link
+   * Phases#INSTRUCTION_SELECTION}.
+   */
+  @Override
+  public void compile(int throughPhase) throws CompilationFailedException {
+    super.compile(Math.min(throughPhase, Phases.INSTRUCTION_SELECTION));
+  }
+
+  private void verify(SourceUnit source, ClassNode classNode) {
+    try {
+      new Verifier().visitClass(classNode);
+    } catch (RuntimeParserException e) {
+      getErrorCollector().addError(new SyntaxException(e.getMessage(), e.getNode()), source);
+    }
+    new LabelVerifier(source).visitClass(classNode);
+    new InstanceOfVerifier() {
+      @Override
+      protected SourceUnit getSourceUnit() {
+        return source;
+      }
+    }.visitClass(classNode);
+    new ClassCompletionVerifier(source).visitClass(classNode);
+    new ExtendedVerifier(source).visitClass(classNode);
+    getErrorCollector().failIfErrors();
+  }
+}
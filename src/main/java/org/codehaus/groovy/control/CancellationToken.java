@@ -0,0 +1,180 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.control;
+
+import java.util.concurrent.TimeUnit;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CompileUnit;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilationUnit.IPrimaryClassNodeOperation;
+import org.codehaus.groovy.control.CompilationUnit.ISourceUnitOperation;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+
+/**
+ * Cooperative cancellation and deadline of compilations, set through {@link
+ * CompilerConfiguration#setCancellationToken(CancellationToken)}. A compilation unit checks the
+ * token at the start and at the end of every phase, for each of its classes and sources, and
+ * before each compilation customizer processes a class. {@link ParallelCompilationUnit} also checks
+ * before generating and completing each class. So a superseded compile stops within one phase
+ * step instead of running to the end. The unit then drops its sources, ASTs and generated classes,
+ * and the compile fails with a {@link CompilationCancelledException}.
+ *
+ * <p>A token may be shared by several compiles, for example all the compiles of one build, and is
+ * safe to cancel from any thread.
+ */
+public final class CancellationToken {
+
+  private final long deadline;
+  private final boolean hasDeadline;
+  private volatile boolean cancelled;
+
+  /** Creates a token which is only cancelled by {@link #cancel()}. */
+  public CancellationToken() {
+    this.deadline = 0;
+    this.hasDeadline = false;
+  }
+
+  /**
+   * Creates a token which is cancelled by {@link #cancel()} or once the given time has elapsed.
+   *
+   * @param timeout the time compilations may take from now
+   * @param unit the unit of the timeout
+   */
+  public CancellationToken(long timeout, TimeUnit unit) {
+    this.deadline = System.nanoTime() + unit.toNanos(timeout);
+    this.hasDeadline = true;
+  }
+
+  /** Cancels the compilations using this token; they stop at their next check. */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /** Returns true if the token has been cancelled or its deadline has passed. */
+  public boolean isCancelled() {
+    return cancelled || isDeadlineExceeded();
+  }
+
+  /** Returns true if the token has a deadline and it has passed. */
+  public boolean isDeadlineExceeded() {
+    return hasDeadline && System.nanoTime() - deadline >= 0;
+  }
+
+  /**
+   * Adds the checks of the configured token to the start and the end of every phase of the given
+   * compilation unit. The token is looked up from the configuration of the unit on each check, so
+   * the checks do nothing while none is set. {@link ParallelCompilationUnit} and {@link
+   * AnalysisCompilationUnit} add them on construction.
+   *
+   * @param unit the compilation unit to check
+   */
+  public static void addChecks(CompilationUnit unit) {
+    for (int phase = Phases.INITIALIZATION; phase <= Phases.FINALIZATION; phase++) {
+      int checkedPhase = phase;
+      unit.addFirstPhaseOperation(new ClassNodeCheck(unit, phase, null), phase);
+      unit.addPhaseOperation(
+          new ISourceUnitOperation() {
+            @Override
+            public void call(SourceUnit source) {
+              check(unit, checkedPhase);
+            }
+
+            @Override
+            public void doPhaseOperation(CompilationUnit unit) {
+              ISourceUnitOperation.super.doPhaseOperation(unit);
+              // also when no source is left to process in this phase
+              check(unit, checkedPhase);
+            }
+          },
+          phase);
+    }
+  }
+
+  /**
+   * Returns the given operation checking the token before it processes each class if it is a
+   * compilation customizer, so that a compile also stops between the customizers of a phase. Other
+   * operations are returned as they are. The units adding {@link #addChecks checks} pass their
+   * operations through this, including the customizers of the configuration.
+   *
+   * @param unit the compilation unit of the operation
+   * @param operation the operation
+   * @param phase the phase the operation is added to
+   * @return the operation to add
+   */
+  static IPrimaryClassNodeOperation checked(
+      CompilationUnit unit, IPrimaryClassNodeOperation operation, int phase) {
+    return operation instanceof CompilationCustomizer
+        ? new ClassNodeCheck(unit, phase, operation)
+        : operation;
+  }
+
+  /** Checks the token before each class, then passes the class on to an operation, if any. */
+  private static final class ClassNodeCheck implements IPrimaryClassNodeOperation {
+    private final CompilationUnit unit;
+    private final int phase;
+    private final IPrimaryClassNodeOperation operation;
+
+    ClassNodeCheck(CompilationUnit unit, int phase, IPrimaryClassNodeOperation operation) {
+      this.unit = unit;
+      this.phase = phase;
+      this.operation = operation;
+    }
+
+    @Override
+    public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+      check(unit, phase);
+      if (operation != null) operation.call(source, context, classNode);
+    }
+
+    @Override
+    public void doPhaseOperation(CompilationUnit unit) {
+      try {
+        IPrimaryClassNodeOperation.super.doPhaseOperation(unit);
+      } finally {
+        // the loop over the classes swallows the exception thrown by call(), and there are no
+        // classes before the conversion phase
+        check(unit, phase);
+      }
+    }
+
+    @Override
+    public boolean needSortedInput() {
+      return operation != null && operation.needSortedInput();
+    }
+  }
+
+  /**
+   * Fails the given compile if its token has been cancelled, after dropping what it holds.
+   *
+   * @param unit the compilation unit
+   * @param phase the current phase
+   * @throws CompilationCancelledException if the token has been cancelled
+   */
+  static void check(CompilationUnit unit, int phase) throws CompilationCancelledException {
+    CancellationToken token = unit.getConfiguration().getCancellationToken();
+    if (token == null || !token.isCancelled()) return;
+
+    // the unit may be kept by the caller, but its ASTs must not
+    unit.sources.clear();
+    unit.queuedSources.clear();
+    unit.ast = new CompileUnit(unit.getClassLoader(), null, unit.getConfiguration());
+    unit.getClasses().clear();
+    throw new CompilationCancelledException(phase, token.isDeadlineExceeded() && !token.cancelled);
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.control;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.codehaus.groovy.control.messages.Message;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.syntax.SyntaxException;
+
+/**
+ * Error collector which reports only the root of a cascade of syntax errors, such as the dozens of
+ * errors that follow one missing brace, and counts the others as its {@link
+ * SyntaxErrorMessage#getFollowOnCount() follow-on errors}. A syntax error follows on from an error
+ * reported before in the same source if
+ *
+ * <ul>
+ *   <li>it has the same message or quotes the same token within the region of lines starting at
+ *       that error, or
+ *   <li>that region already holds the maximum number of errors reported per region.
+ * </ul>
+ *
+ * Once a source has the maximum number of errors reported per source, its further errors are
+ * counted by one {@link MoreErrorsMessage} reported after them, such as {@code 7 more errors}.
+ *
+ * <p>Follow-on errors are recognized before {@link SyntaxErrorMessage} works out their position,
+ * and are neither kept nor rendered, so a broken file costs about as much as one with a few errors.
+ * Regions are therefore compared on the lines the errors were reported at, before their positions
+ * were resolved. Only reported errors count towards the {@link CompilerConfiguration#getTolerance()
+ * tolerance}, so a cascade in one source does not use up the errors that other sources may report.
+ *
+ * <p>The token of a message is its first quoted one; the bracketed tag of a message, such as {@code
+ * [Static type checking]}, is not a token, or unrelated errors would share it. Sources may be
+ * parsed in parallel, so the errors of each source are kept in a concurrent map.
+ */
+public class CoalescingErrorCollector extends ErrorCollector {
+
+  private static final long serialVersionUID = -2937310846624411372L;
+
+  public static final int DEFAULT_REGION_LINES = 10;
+  public static final int DEFAULT_MAX_ERRORS_PER_REGION = 2;
+  public static final int DEFAULT_MAX_ERRORS_PER_SOURCE = 5;
+
+  private static final Pattern QUOTED_TOKEN = Pattern.compile("'(.*?)'");
+
+  private final int regionLines;
+  private final int maxErrorsPerRegion;
+  private final int maxErrorsPerSource;
+
+  /** The reported syntax errors of each source, in the order they were reported. */
+  private transient Map<String, List<Root>> roots = new ConcurrentHashMap<>();
+
+  /** The errors of each source beyond the maximum number of errors reported per source. */
+  private transient Map<String, MoreErrorsMessage> moreErrors = new ConcurrentHashMap<>();
+
+  private final AtomicInteger followOnCount = new AtomicInteger();
+
+  public CoalescingErrorCollector(CompilerConfiguration configuration) {
+    this(
+        configuration,
+        DEFAULT_REGION_LINES,
+        DEFAULT_MAX_ERRORS_PER_REGION,
+        DEFAULT_MAX_ERRORS_PER_SOURCE);
+  }
+
+  /**
+   * @param configuration the configuration
+   * @param regionLines the number of lines of the region starting at a reported error
+   * @param maxErrorsPerRegion the number of errors reported within one region
+   * @param maxErrorsPerSource the number of errors reported for one source
+   */
+  public CoalescingErrorCollector(
+      CompilerConfiguration configuration,
+      int regionLines,
+      int maxErrorsPerRegion,
+      int maxErrorsPerSource) {
+    super(configuration);
+    if (regionLines < 1 || maxErrorsPerRegion < 1 || maxErrorsPerSource < 1) {
+      throw new IllegalArgumentException("region and caps must be positive");
+    }
+    this.regionLines = regionLines;
+    this.maxErrorsPerRegion = maxErrorsPerRegion;
+    this.maxErrorsPerSource = maxErrorsPerSource;
+  }
+
+  /**
+   * Finds the reported error the given syntax error follows on from. Called by {@link
+   * SyntaxErrorMessage} before it works out the position of the error.
+   *
+   * @param cause the syntax error, with the position the parser or visitor gave it
+   * @param source the source of the error
+   * @return the root error, or {@code null} if the error is to be reported
+   */
+  public SyntaxErrorMessage findRoot(SyntaxException cause, SourceUnit source) {
+    List<Root> reported = roots.get(source.getName());
+    if (reported == null) return null;
+
+    String message = cause.getOriginalMessage();
+    String token = quotedToken(message);
+    int line = cause.getLine();
+    Root first = null;
+    int inRegion = 0;
+    for (Root root : reported) {
+      if (line >= root.line && line < root.line + regionLines) {
+        if (root.message.equals(message)) return root.error;
+        if (token != null && token.equals(root.token)) return root.error;
+        if (first == null) first = root;
+        inRegion += 1;
+      }
+    }
+    if (inRegion >= maxErrorsPerRegion) return first.error;
+    if (reported.size() >= maxErrorsPerSource) {
+      return moreErrors.computeIfAbsent(
+          source.getName(), name -> new MoreErrorsMessage(line, cause.getStartColumn(), source));
+    }
+    return null;
+  }
+
+  @Override
+  public void addErrorAndContinue(Message message) {
+    if (message instanceof SyntaxErrorMessage) {
+      SyntaxErrorMessage error = (SyntaxErrorMessage) message;
+      SyntaxErrorMessage root = error.getRoot();
+      if (root != null) {
+        // reported along with the first error it counts
+        if (root instanceof MoreErrorsMessage && root.getFollowOnCount() == 0) {
+          super.addErrorAndContinue(root);
+        }
+        root.addFollowOn();
+        followOnCount.incrementAndGet();
+        return;
+      }
+      SyntaxException cause = error.getCause();
+      String name = cause.getSourceLocator();
+      if (name != null && !(error instanceof MoreErrorsMessage)) {
+        String text = cause.getOriginalMessage();
+        roots
+            .computeIfAbsent(name, k -> new CopyOnWriteArrayList<>())
+            .add(new Root(error, error.getOriginalLine(), text, quotedToken(text)));
+      }
+    }
+    super.addErrorAndContinue(message);
+  }
+
+  @Override
+  public void addCollectorContents(ErrorCollector that) {
+    super.addCollectorContents(that);
+    if (that instanceof CoalescingErrorCollector) {
+      followOnCount.addAndGet(((CoalescingErrorCollector) that).getFollowOnCount());
+    }
+  }
+
+  /** Returns the number of follow-on errors which have not been reported. */
+  public int getFollowOnCount() {
+    return followOnCount.get();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    roots = new ConcurrentHashMap<>();
+    moreErrors = new ConcurrentHashMap<>();
+  }
+
+  private static String quotedToken(String message) {
+    if (message == null) return null;
+    Matcher matcher = QUOTED_TOKEN.matcher(message);
+    if (!matcher.find()) return null;
+    String token = matcher.group(1);
+    return token.trim().isEmpty() ? null : token.trim();
+  }
+
+  /**
+   * The errors of a source beyond the maximum number of errors reported per source, counted as its
+   * follow-on errors. It is positioned at the first of them.
+   */
+  public static final class MoreErrorsMessage extends SyntaxErrorMessage {
+
+    MoreErrorsMessage(int line, int column, SourceUnit source) {
+      super(new SyntaxException("more errors", line, column), source, false);
+    }
+
+    /** Returns the text of the message, such as {@code 7 more errors}. */
+    public String getMessage() {
+      int count = getFollowOnCount();
+      return count + " more error" + (count > 1 ? "s" : "");
+    }
+
+    @Override
+    public void write(PrintWriter output, Janitor janitor) {
+      output.print(source.getName() + ": " + getMessage());
+    }
+  }
+
+  private static final class Root {
+    final SyntaxErrorMessage error;
+    final int line;
+    final String message;
+    final String token;
+
+    Root(SyntaxErrorMessage error, int line, String message, String token) {
+      this.error = error;
+      this.line = line;
+      this.message = Objects.toString(message, "");
+      this.token = token;
+    }
+  }
+}
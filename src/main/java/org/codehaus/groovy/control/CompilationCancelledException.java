@@ -0,0 +1,46 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.control;
+
+/**
+ * Thrown when a compile stops because its {@link CancellationToken} has been cancelled or its
+ * deadline has passed. It does not refer to the compilation unit, whose ASTs have been dropped.
+ */
+public class CompilationCancelledException extends CompilationFailedException {
+
+  private static final long serialVersionUID = -6391720574409821187L;
+
+  private final boolean deadlineExceeded;
+
+  public CompilationCancelledException(int phase, boolean deadlineExceeded) {
+    super(phase, null);
+    this.deadlineExceeded = deadlineExceeded;
+  }
+
+  /** Returns true if the compile ran past its deadline rather than being cancelled. */
+  public boolean isDeadlineExceeded() {
+    return deadlineExceeded;
+  }
+
+  @Override
+  public String getMessage() {
+    return Phases.getDescription(phase)
+        + (deadlineExceeded ? " exceeded the compilation deadline" : " cancelled");
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.control;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs compiles in {@link CompilePriority priority} lanes, so that the compile of the file being
+ * edited does not queue up behind the validation of the whole project. At most {@link
+ * CompilerConfiguration#getCompileThreads()} compiles run at once; a waiting compile starts when a
+ * running one finishes, the most urgent lane first and in submission order within a lane.
+ *
+ * <p>Compiles are preempted between phases: at the end of each phase a running compile checks for a
+ * waiting compile of a more urgent lane, and if there is one, hands its slot over and waits until
+ * it gets a slot again. A preempted compile keeps its thread and its state, so it resumes with the
+ * next phase. The latency of a foreground compile is thus its own compile time plus at most one
+ * phase of each compile it preempts.
+ *
+ * <p>Parallel parsing, see {@link CompilerConfiguration#PARALLEL_PARSE}, runs on the common fork
+ * join pool and is not limited by the scheduler; disabling it in the configuration of background
+ * compiles leaves the pool to the foreground.
+ */
+public class CompileScheduler implements AutoCloseable {
+
+  private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+  private final int slots;
+  private final ExecutorService executor;
+  private final ThreadLocal<Job<?>> current = new ThreadLocal<>();
+  private final PriorityQueue<Job<?>> waiting = new PriorityQueue<>();
+  private int running;
+  private long submitted;
+  private boolean closed;
+
+  /**
+   * Creates a scheduler running {@link CompilerConfiguration#getCompileThreads()} compiles at once.
+   *
+   * @param configuration the configuration to take the number of threads from
+   */
+  public CompileScheduler(CompilerConfiguration configuration) {
+    this(configuration.getCompileThreads());
+  }
+
+  /**
+   * Creates a scheduler running the given number of compiles at once.
+   *
+   * @param threads the number of compiles, 0 for one per available processor
+   */
+  public CompileScheduler(int threads) {
+    if (threads < 0) throw new IllegalArgumentException("threads must not be negative");
+    slots = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    String prefix = "groovy-compile-" + POOL_NUMBER.incrementAndGet() + "-";
+    AtomicInteger threadNumber = new AtomicInteger();
+    executor =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Compiles the given unit through all phases.
+   *
+   * @see #submit(CompilationUnit, int, CompilePriority)
+   */
+  public <U extends CompilationUnit> CompletableFuture<U> submit(U unit, CompilePriority priority) {
+    return submit(unit, Phases.ALL, priority);
+  }
+
+  /**
+   * Compiles the given unit in the given lane. A unit must be submitted only once. Cancelling the
+   * returned future before the compile starts removes it from its lane; to stop a compile which is
+   * running, use a {@link CancellationToken}.
+   *
+   * @param unit the unit to compile
+   * @param throughPhase the last phase to run
+   * @param priority the lane
+   * @return the future of the compiled unit, failed with the exception of the compile if any
+   * @throws RejectedExecutionException if the scheduler is closed
+   */
+  public <U extends CompilationUnit> CompletableFuture<U> submit(
+      U unit, int throughPhase, CompilePriority priority) {
+    Job<U> job;
+    synchronized (this) {
+      if (closed) throw new RejectedExecutionException("compile scheduler is closed");
+      job = new Job<>(unit, throughPhase, priority, submitted++);
+      addPreemptionPoints(unit, throughPhase);
+      waiting.add(job);
+      dispatch();
+    }
+    return job.future;
+  }
+
+  private void addPreemptionPoints(CompilationUnit unit, int throughPhase) {
+    for (int phase = Phases.INITIALIZATION; phase < Math.min(throughPhase, Phases.ALL); phase++) {
+      unit.addPhaseOperation(
+          new CompilationUnit.ISourceUnitOperation() {
+            @Override
+            public void call(SourceUnit source) {}
+
+            @Override
+            public void doPhaseOperation(CompilationUnit unit) {
+              Job<?> job = current.get();
+              if (job != null && job.unit == unit) preempt(job);
+            }
+          },
+          phase);
+    }
+  }
+
+  /** Starts or resumes waiting compiles while there are free slots. */
+  private void dispatch() {
+    boolean resumed = false;
+    while (running < slots && !waiting.isEmpty()) {
+      Job<?> job = waiting.poll();
+      if (!job.started) {
+        if (job.future.isDone()) continue; // cancelled while waiting
+        job.started = true;
+        running += 1;
+        executor.execute(job);
+      } else {
+        job.resumed = true;
+        resumed = true;
+        running += 1;
+      }
+    }
+    if (resumed) notifyAll();
+  }
+
+  /** Hands the slot of the given running compile over to a more urgent one, if any is waiting. */
+  private synchronized void preempt(Job<?> job) {
+    Job<?> next = waiting.peek();
+    if (next == null || next.priority.compareTo(job.priority) >= 0) return;
+
+    running -= 1;
+    job.resumed = false;
+    waiting.add(job);
+    dispatch();
+    boolean interrupted = false;
+    while (!job.resumed) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  private synchronized void finished() {
+    running -= 1;
+    dispatch();
+  }
+
+  /** Returns the number of compiles submitted but not started yet, or preempted. */
+  public synchronized int getWaitingCount() {
+    return waiting.size();
+  }
+
+  /**
+   * Cancels the compiles which have not started yet and lets the others finish. Compiles cannot be
+   * submitted afterwards.
+   */
+  @Override
+  public void close() {
+    List<Job<?>> cancelled = new ArrayList<>();
+    synchronized (this) {
+      closed = true;
+      waiting.removeIf(job -> !job.started && cancelled.add(job));
+    }
+    for (Job<?> job : cancelled) {
+      job.future.completeExceptionally(new CancellationException("compile scheduler is closed"));
+    }
+    executor.shutdown();
+  }
+
+  private final class Job<U extends CompilationUnit> implements Runnable, Comparable<Job<?>> {
+    final U unit;
+    final int throughPhase;
+    final CompilePriority priority;
+    final long sequence;
+    final CompletableFuture<U> future = new CompletableFuture<>();
+
+    /** Guarded by the scheduler. */
+    boolean started;
+
+    /** Guarded by the scheduler. */
+    boolean resumed;
+
+    Job(U unit, int throughPhase, CompilePriority priority, long sequence) {
+      this.unit = unit;
+      this.throughPhase = throughPhase;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public void run() {
+      current.set(this);
+      try {
+        if (!future.isDone()) {
+          unit.compile(throughPhase);
+          future.complete(unit);
+        }
+      } catch (Throwable t) {
+        future.completeExceptionally(t);
+      } finally {
+        current.remove();
+        finished();
+      }
+    }
+
+    @Override
+    public int compareTo(Job<?> other) {
+      int result = priority.compareTo(other.priority);
+      return result != 0 ? result : Long.compare(sequence, other.sequence);
+    }
+  }
+}
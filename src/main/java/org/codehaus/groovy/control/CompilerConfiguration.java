@@ -23,6 +23,7 @@ import org.codehaus.groovy.GroovyBugError;
 import org.codehaus.groovy.control.customizers.CompilationCustomizer;
 import org.codehaus.groovy.control.io.NullWriter;
 import org.codehaus.groovy.control.messages.WarningMessage;
+import org.codehaus.groovy.reflection.android.AndroidSupport;
 import org.objectweb.asm.Opcodes;
 import static org.codehaus.groovy.reflection.android.AndroidSupport.isDalvik;
 import static org.codehaus.groovy.reflection.android.AndroidSupport.isRunningAndroid;
@@ -55,6 +56,12 @@ public class CompilerConfiguration {
     /** Optimization Option for enabling <code>invokedynamic</code> compilation. */
     public static final String INVOKEDYNAMIC = "indy";
 
+    /**
+     * Value of the <code>groovy.target.indy</code> system property which enables {@link #INVOKEDYNAMIC}
+     * only if the runtime supports Groovy's indy call sites, see {@link #DEFAULT_INDY}.
+     */
+    public static final String INDY_AUTO = "auto";
+
     /** Optimization Option for enabling attaching groovydoc as AST node metadata. */
     public static final String GROOVYDOC = "groovydoc";
 
@@ -64,6 +71,12 @@ public class CompilerConfiguration {
     /** Optimization Option for enabling parallel parsing. */
     public static final String PARALLEL_PARSE = "parallelParse";
 
+    /** Optimization Option for enabling parallel class generation, see {@link ParallelCompilationUnit}. */
+    public static final String PARALLEL_CLASSGEN = "parallelClassgen";
+
+    /** Optimization Option for enabling the coalescing of follow-on errors, see {@link CoalescingErrorCollector}. */
+    public static final String COALESCE_ERRORS = "coalesceErrors";
+
     /** Joint Compilation Option for enabling generating stubs in memory. */
     public static final String MEM_STUB = "memStub";
 
@@ -148,6 +161,13 @@ public class CompilerConfiguration {
 
     public static final String DEFAULT_TARGET_BYTECODE = defaultTargetBytecode();
 
+    /**
+     * Whether {@link #INVOKEDYNAMIC} is enabled when <code>groovy.target.indy</code> is unset or
+     * {@link #INDY_AUTO}: indy on runtimes which support its call sites, classic call site caching
+     * otherwise (e.g. on Android, where <code>MutableCallSite</code> and <code>SwitchPoint</code> are missing).
+     */
+    public static final boolean DEFAULT_INDY = defaultIndy();
+
     /**
      * The valid targetBytecode values.
      */
@@ -205,6 +225,11 @@ public class CompilerConfiguration {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public void setCancellationToken(final CancellationToken cancellationToken) {
+            throw new UnsupportedOperationException();
+        }
+
         @Override
         public void setClasspath(final String classpath) {
             throw new UnsupportedOperationException();
@@ -311,6 +336,11 @@ public class CompilerConfiguration {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public void setCompileThreads(final int compileThreads) {
+            throw new UnsupportedOperationException();
+        }
+
         @Override
         public void setVerbose(final boolean verbose) {
             throw new UnsupportedOperationException();
@@ -377,6 +407,11 @@ public class CompilerConfiguration {
      */
     private int tolerance;
 
+    /**
+     * The number of compiles a {@link CompileScheduler} runs at once, 0 == one per processor.
+     */
+    private int compileThreads;
+
     /**
      * Base class name for scripts (must derive from Script).
      */
@@ -445,6 +480,11 @@ public class CompilerConfiguration {
 
     private BytecodeProcessor bytecodePostprocessor;
 
+    /**
+     * Cancels compilations using this configuration, null by default == never cancelled.
+     */
+    private CancellationToken cancellationToken;
+
     /**
      * Sets the compiler flags/settings to default values.
      *
@@ -465,8 +505,11 @@ public class CompilerConfiguration {
      * <blockquote>
      * <table summary="Groovy Compiler Optimization Properties">
      *   <tr><th>Property Key</th><th>Related Property Getter</th></tr>
-     *   <tr><td><code>groovy.target.indy</code></td><td>{@link #getOptimizationOptions}</td></tr>
+     *   <tr><td><code>groovy.target.indy</code> (<code>true</code>, <code>false</code> or {@link #INDY_AUTO})</td><td>{@link #isIndyEnabled}</td></tr>
      *   <tr><td><code>groovy.parallel.parse</code></td><td>{@link #getOptimizationOptions}</td></tr>
+     *   <tr><td><code>groovy.parallel.classgen</code></td><td>{@link #isParallelClassgenEnabled}</td></tr>
+     *   <tr><td><code>groovy.compile.threads</code></td><td>{@link #getCompileThreads}</td></tr>
+     *   <tr><td><code>groovy.errors.coalesce</code></td><td>{@link #isCoalesceErrorsEnabled}</td></tr>
      *   <tr><td><code>groovy.attach.groovydoc</code></td><td>{@link #getOptimizationOptions}</td></tr>
      *   <tr><td><code>groovy.attach.runtime.groovydoc</code></td><td>{@link #getOptimizationOptions}</td></tr>
      * </table>
@@ -489,10 +532,13 @@ public class CompilerConfiguration {
         defaultScriptExtension = getSystemPropertySafe("groovy.default.scriptExtension", ".groovy");
 
         optimizationOptions = new HashMap<>(4);
-        handleOptimizationOption(INVOKEDYNAMIC, getSystemPropertySafe("groovy.target.indy", "true"));
+        handleOptimizationOption(INVOKEDYNAMIC, resolveIndyOption(getSystemPropertySafe("groovy.target.indy", INDY_AUTO)));
         handleOptimizationOption(GROOVYDOC, getSystemPropertySafe("groovy.attach.groovydoc"));
         handleOptimizationOption(RUNTIME_GROOVYDOC, getSystemPropertySafe("groovy.attach.runtime.groovydoc"));
         handleOptimizationOption(PARALLEL_PARSE, getSystemPropertySafe("groovy.parallel.parse", "true"));
+        handleOptimizationOption(PARALLEL_CLASSGEN, getSystemPropertySafe("groovy.parallel.classgen"));
+        handleOptimizationOption(COALESCE_ERRORS, getSystemPropertySafe("groovy.errors.coalesce"));
+        compileThreads = Math.max(0, getIntegerSafe("groovy.compile.threads", 0));
 
         if (getBooleanSafe("groovy.mem.stub")) {
             jointCompilationOptions = new HashMap<>(2);
@@ -504,6 +550,10 @@ public class CompilerConfiguration {
         if (val != null) optimizationOptions.put(key, Boolean.valueOf(val));
     }
 
+    private static String resolveIndyOption(String val) {
+        return INDY_AUTO.equalsIgnoreCase(val) ? String.valueOf(DEFAULT_INDY) : val;
+    }
+
     /**
      * Copy constructor. Use this if you have a mostly correct configuration
      * for your compilation but you want to make a some changes programmatically.
@@ -528,6 +578,7 @@ public class CompilerConfiguration {
         setDebug(configuration.getDebug());
         setParameters(configuration.getParameters());
         setTolerance(configuration.getTolerance());
+        setCompileThreads(configuration.getCompileThreads());
         setScriptBaseClass(configuration.getScriptBaseClass());
         setRecompileGroovySource(configuration.getRecompileGroovySource());
         setMinimumRecompilationInterval(configuration.getMinimumRecompilationInterval());
@@ -542,6 +593,7 @@ public class CompilerConfiguration {
         setScriptExtensions(new LinkedHashSet<>(configuration.getScriptExtensions()));
         setOptimizationOptions(new HashMap<>(configuration.getOptimizationOptions()));
         setBytecodePostprocessor(configuration.getBytecodePostprocessor());
+        setCancellationToken(configuration.getCancellationToken());
 
         Map<String, Object> jointCompilationOptions = configuration.getJointCompilationOptions();
         setJointCompilationOptions(null != jointCompilationOptions ? new HashMap<>(jointCompilationOptions) : jointCompilationOptions);
@@ -587,10 +639,14 @@ public class CompilerConfiguration {
      *   <tr><td><code>groovy.target.bytecode</code></td><td>{@link #getTargetBytecode}</td></tr>
      *   <tr><td><code>groovy.parameters</code></td><td>{@link #getParameters()}</td></tr>
      *   <tr><td><code>groovy.preview.features</code></td><td>{@link #isPreviewFeatures}</td></tr>
+     *   <tr><td><code>groovy.target.indy</code> (<code>true</code>, <code>false</code> or {@link #INDY_AUTO})</td><td>{@link #isIndyEnabled}</td></tr>
+     *   <tr><td><code>groovy.parallel.classgen</code></td><td>{@link #isParallelClassgenEnabled}</td></tr>
+     *   <tr><td><code>groovy.compile.threads</code></td><td>{@link #getCompileThreads}</td></tr>
      *   <tr><td><code>groovy.classpath</code></td><td>{@link #getClasspath}</td></tr>
      *   <tr><td><code>groovy.output.verbose</code></td><td>{@link #getVerbose}</td></tr>
      *   <tr><td><code>groovy.output.debug</code></td><td>{@link #getDebug}</td></tr>
      *   <tr><td><code>groovy.errors.tolerance</code></td><td>{@link #getTolerance}</td></tr>
+     *   <tr><td><code>groovy.errors.coalesce</code></td><td>{@link #isCoalesceErrorsEnabled}</td></tr>
      *   <tr><td><code>groovy.default.scriptExtension</code></td><td>{@link #getDefaultScriptExtension}</td></tr>
      *   <tr><td><code>groovy.script.base</code></td><td>{@link #getScriptBaseClass}</td></tr>
      *   <tr><td><code>groovy.recompile</code></td><td>{@link #getRecompileGroovySource}</td></tr>
@@ -788,6 +844,12 @@ public class CompilerConfiguration {
         text = configuration.getProperty("groovy.preview.features");
         if (text != null) setPreviewFeatures(text.equalsIgnoreCase("true"));
 
+        text = configuration.getProperty("groovy.target.indy");
+        if (text != null) handleOptimizationOption(INVOKEDYNAMIC, resolveIndyOption(text));
+
+        text = configuration.getProperty("groovy.parallel.classgen");
+        if (text != null) handleOptimizationOption(PARALLEL_CLASSGEN, text);
+
         text = configuration.getProperty("groovy.log.classgen");
         if (text != null) setLogClassgen(text.equalsIgnoreCase("true"));
 
@@ -819,6 +881,18 @@ public class CompilerConfiguration {
         }
         setTolerance(numeric);
 
+        text = configuration.getProperty("groovy.compile.threads");
+        if (text != null) {
+            try {
+                setCompileThreads(Integer.parseInt(text));
+            } catch (NumberFormatException e) {
+                throw new ConfigurationException(e);
+            }
+        }
+
+        text = configuration.getProperty("groovy.errors.coalesce");
+        if (text != null) handleOptimizationOption(COALESCE_ERRORS, text);
+
         text = configuration.getProperty("groovy.default.scriptExtension");
         if (text != null) setDefaultScriptExtension(text);
 
@@ -1016,6 +1090,24 @@ public class CompilerConfiguration {
         this.tolerance = tolerance;
     }
 
+    /**
+     * Returns the number of compiles a {@link CompileScheduler} created from this configuration
+     * runs at once, or 0 for one per available processor. Parallel parsing, see {@link #PARALLEL_PARSE},
+     * runs on the common fork join pool on top of these.
+     */
+    public int getCompileThreads() {
+        return this.compileThreads;
+    }
+
+    /**
+     * Sets the number of compiles a {@link CompileScheduler} created from this configuration
+     * runs at once, 0 for one per available processor.
+     */
+    public void setCompileThreads(final int compileThreads) {
+        if (compileThreads < 0) throw new IllegalArgumentException("compileThreads must not be negative");
+        this.compileThreads = compileThreads;
+    }
+
     /**
      * Gets the name of the base class for scripts.  It must be a subclass
      * of Script.
@@ -1148,6 +1240,15 @@ public class CompilerConfiguration {
     return JDK8;
   }
 
+    /**
+     * Returns whether invokedynamic should be used by default on the current runtime
+     *
+     * @return whether the runtime supports the call sites of indy compiled code
+     */
+    private static boolean defaultIndy() {
+        return AndroidSupport.isIndySupported();
+    }
+
     /**
      * Whether the bytecode version has preview features enabled (JEP 12)
      *
@@ -1299,12 +1400,47 @@ public class CompilerConfiguration {
     }
 
     /**
-     * Checks if invoke dynamic is enabled.
+     * Returns the token which cancels compilations using this configuration.
+     *
+     * @return the token or null if compilations are never cancelled
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * Sets the token which cancels compilations using this configuration. It is checked between
+     * phases by {@link ParallelCompilationUnit} and {@link AnalysisCompilationUnit}, and by any other
+     * compilation unit passed to {@link CancellationToken#addChecks(CompilationUnit)}.
+     *
+     * @param cancellationToken the token or null to never cancel
+     */
+    public void setCancellationToken(final CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Checks if invoke dynamic is enabled. Unless set explicitly, this is {@link #DEFAULT_INDY}.
      */
     public boolean isIndyEnabled() {
         return !Boolean.FALSE.equals(getOptimizationOptions().get(INVOKEDYNAMIC));
     }
 
+    /**
+     * Checks if parallel class generation is enabled, which only {@link ParallelCompilationUnit} honors.
+     */
+    public boolean isParallelClassgenEnabled() {
+        return Boolean.TRUE.equals(getOptimizationOptions().get(PARALLEL_CLASSGEN));
+    }
+
+    /**
+     * Checks if follow-on errors are coalesced into the error that caused them, which {@link ParallelCompilationUnit}
+     * and {@link AnalysisCompilationUnit} honor by collecting errors with a {@link CoalescingErrorCollector}.
+     */
+    public boolean isCoalesceErrorsEnabled() {
+        return Boolean.TRUE.equals(getOptimizationOptions().get(COALESCE_ERRORS));
+    }
+
     /**
      * Checks if groovydoc is enabled.
      */
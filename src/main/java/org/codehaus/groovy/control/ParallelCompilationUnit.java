@@ -0,0 +1,175 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.control;
+
+import groovy.lang.GroovyClassLoader;
+import groovyjarjarasm.asm.ClassReader;
+import groovyjarjarasm.asm.ClassVisitor;
+import groovyjarjarasm.asm.ClassWriter;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.jfr.GroovyEvents;
+import org.codehaus.groovy.tools.GroovyClass;
+
+/**
+ * Compilation unit which moves the expensive part of class generation, computing the stack map
+ * frames and maximum stack sizes, off the single classgen thread when {@link
+ * CompilerConfiguration#PARALLEL_CLASSGEN} is enabled. Classes are first generated one by one
+ * without frames, then each is rewritten concurrently by a {@code COMPUTE_FRAMES} {@link
+ * ClassWriter} of its own, the one {@link CompilationUnit#createClassVisitor()} creates for a
+ * sequential compile. Every class keeps its place in {@link #getClasses()}, so the output does not
+ * depend on thread timing.
+ *
+ * <p>The class hierarchy lookups made while computing frames go through the {@link
+ * ClassNodeResolver} of the unit from several threads at once. The default resolver of this unit
+ * caches in a concurrent map; a resolver set in its place must be thread safe too.
+ *
+ * <p>Walking the AST stays sequential, as neither the AST nor the class generator is thread safe.
+ * Parallel classgen is skipped while a {@link CompilationUnit.ClassgenCallback} is set, since the
+ * callback expects the complete bytecode right away, as is the case for {@link GroovyClassLoader}.
+ * That is also the only place the {@link CompilerConfiguration#getBytecodePostprocessor()
+ * bytecode postprocessor} runs, so it stays sequential.
+ *
+ * <p>The {@link CancellationToken} of the configuration is checked between phases and before each
+ * class is generated or completed.
+ */
+public final class ParallelCompilationUnit extends CompilationUnit {
+
+  /** The frame-less bytecode of the classes generated since the last completion. */
+  private final Set<byte[]> incomplete = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  public ParallelCompilationUnit(CompilerConfiguration configuration) {
+    this(configuration, null, null);
+  }
+
+  public ParallelCompilationUnit(
+      CompilerConfiguration configuration, CodeSource codeSource, GroovyClassLoader loader) {
+    this(configuration, codeSource, loader, null);
+  }
+
+  public ParallelCompilationUnit(
+      CompilerConfiguration configuration,
+      CodeSource codeSource,
+      GroovyClassLoader loader,
+      GroovyClassLoader transformLoader) {
+    super(configuration, codeSource, loader, transformLoader);
+    classNodeResolver = new ConcurrentClassNodeResolver();
+    if (getConfiguration().isCoalesceErrorsEnabled()) {
+      errorCollector = new CoalescingErrorCollector(getConfiguration());
+    }
+    // runs after the classes of all sources have been generated
+    addPhaseOperation(
+        new ISourceUnitOperation() {
+          @Override
+          public void call(SourceUnit source) {}
+
+          @Override
+          public void doPhaseOperation(CompilationUnit unit) {
+            completeClasses();
+          }
+        },
+        Phases.CLASS_GENERATION);
+    CancellationToken.addChecks(this);
+    // does nothing unless -Dgroovy.jfr=true
+    GroovyEvents.addPhaseEvents(this);
+  }
+
+  /**
+   * Adds an operation, checking the {@link CancellationToken} before each class it processes if it
+   * is a compilation customizer.
+   */
+  @Override
+  public void addPhaseOperation(IPrimaryClassNodeOperation operation, int phase) {
+    super.addPhaseOperation(CancellationToken.checked(this, operation, phase), phase);
+  }
+
+  private boolean isParallelClassgen() {
+    return getConfiguration().isParallelClassgenEnabled() && classgenCallback == null;
+  }
+
+  @Override
+  protected ClassVisitor createClassVisitor() {
+    CancellationToken.check(this, Phases.CLASS_GENERATION);
+    if (!isParallelClassgen()) return super.createClassVisitor();
+    return new ClassWriter(0) {
+      @Override
+      public byte[] toByteArray() {
+        byte[] bytes = super.toByteArray();
+        incomplete.add(bytes);
+        return bytes;
+      }
+    };
+  }
+
+  private void completeClasses() {
+    if (incomplete.isEmpty()) return;
+
+    List<GroovyClass> classes = getClasses();
+    List<Integer> indexes = new ArrayList<>(incomplete.size());
+    for (int i = 0; i < classes.size(); i++) {
+      if (incomplete.contains(classes.get(i).getBytes())) indexes.add(i);
+    }
+    incomplete.clear();
+
+    GroovyClass[] completed = new GroovyClass[indexes.size()];
+    IntStream.range(0, completed.length)
+        .parallel()
+        .forEach(
+            i -> {
+              CancellationToken token = getConfiguration().getCancellationToken();
+              if (token != null && token.isCancelled()) return;
+              GroovyClass generated = classes.get(indexes.get(i));
+              completed[i] = new GroovyClass(generated.getName(), computeFrames(generated));
+            });
+    // the classes are dropped sequentially, once all completions have stopped
+    CancellationToken.check(this, Phases.CLASS_GENERATION);
+    for (int i = 0; i < completed.length; i++) {
+      classes.set(indexes.get(i), completed[i]);
+    }
+  }
+
+  private byte[] computeFrames(GroovyClass generated) {
+    ClassWriter writer = (ClassWriter) super.createClassVisitor();
+    new ClassReader(generated.getBytes()).accept(writer, ClassReader.SKIP_FRAMES);
+    return writer.toByteArray();
+  }
+
+  /** Class node resolver whose cache can be read and filled by several threads at once. */
+  private static final class ConcurrentClassNodeResolver extends ClassNodeResolver {
+    private final Map<String, ClassNode> cache = new ConcurrentHashMap<>();
+
+    @Override
+    public void cacheClass(String name, ClassNode res) {
+      cache.put(name, res);
+    }
+
+    @Override
+    public ClassNode getFromClassCache(String name) {
+      return cache.get(name);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.control;
+
+import groovy.lang.GroovyClassLoader;
+import java.net.MalformedURLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.codehaus.groovy.ast.ClassNode;
+
+/**
+ * Resolver whose class node cache is shared by several compilation units, sequential or concurrent,
+ * instead of starting empty for every unit. Only class nodes found on the classpath, including
+ * known missing classes, are cached; classes of the compiled sources never reach it. Units sharing
+ * a resolver must share the classpath too.
+ *
+ * <p>Class nodes read from class files resolve their members lazily, through the unit they were
+ * found for. So that the cache does not keep the first unit to use it alive, with its sources and
+ * AST, the cache is scoped to a resolution unit of its own, created along with the resolver and
+ * living as long as its owner, such as a compile daemon: classpath classes are always looked up
+ * for that unit, which never gets any source. Only names that a unit finds as Groovy sources on
+ * the classpath are looked up for that unit, and not cached.
+ */
+public final class SharedClassNodeResolver extends ClassNodeResolver {
+
+  private final Map<String, ClassNode> cache = new ConcurrentHashMap<>();
+  private final CompilationUnit resolutionUnit;
+
+  /**
+   * Creates a resolver for units compiling with the given classpath.
+   *
+   * @param configuration the configuration of the units
+   * @param loader the class loader holding the classpath of the units
+   */
+  public SharedClassNodeResolver(CompilerConfiguration configuration, GroovyClassLoader loader) {
+    GroovyClassLoader resolutionLoader = new GroovyClassLoader(loader, configuration, false);
+    resolutionLoader.setResourceLoader(name -> null);
+    resolutionUnit = new CompilationUnit(configuration, null, resolutionLoader);
+    resolutionUnit.setClassNodeResolver(this);
+  }
+
+  @Override
+  public LookupResult resolveName(String name, CompilationUnit unit) {
+    if (unit != resolutionUnit && getFromClassCache(name) == null && isScript(name, unit)) {
+      return findClassNode(name, unit);
+    }
+    return super.resolveName(name, resolutionUnit);
+  }
+
+  /** Same check as the lookup of a name as a script, before the class files are compared to it. */
+  private static boolean isScript(String name, CompilationUnit unit) {
+    if (name.startsWith("java.") || name.indexOf('$') != -1) return false;
+    try {
+      return unit.getClassLoader().getResourceLoader().loadGroovySource(name) != null;
+    } catch (MalformedURLException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void cacheClass(String name, ClassNode res) {
+    cache.put(name, res);
+  }
+
+  @Override
+  public ClassNode getFromClassCache(String name) {
+    return cache.get(name);
+  }
+
+  /** Drops the cached class node of the given class, for example once it has been compiled. */
+  public void forget(String name) {
+    cache.remove(name);
+  }
+
+  /** Drops all cached class nodes. */
+  public void clear() {
+    cache.clear();
+  }
+
+  /** Returns the number of cached class nodes, including known missing classes. */
+  public int size() {
+    return cache.size();
+  }
+}
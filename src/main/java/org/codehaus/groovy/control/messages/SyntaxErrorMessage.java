@@ -21,6 +21,8 @@ package org.codehaus.groovy.control.messages;
 import java.io.PrintWriter;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.codehaus.groovy.control.CoalescingErrorCollector;
+import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.Janitor;
 import org.codehaus.groovy.control.SourceUnit;
 import org.codehaus.groovy.syntax.SyntaxException;
@@ -29,10 +31,38 @@ import org.codehaus.groovy.syntax.SyntaxException;
 public class SyntaxErrorMessage extends Message {
   protected SyntaxException cause;
   protected SourceUnit source;
+  private SyntaxErrorMessage root;
+  private int followOnCount;
+  private final int originalLine;
 
   public SyntaxErrorMessage(SyntaxException cause, SourceUnit source) {
+    this(cause, source, true);
+  }
+
+  /**
+   * @param cause the syntax error
+   * @param source the source of the error
+   * @param resolve whether to coalesce the error and to resolve its position, or to keep it as is
+   */
+  protected SyntaxErrorMessage(SyntaxException cause, SourceUnit source, boolean resolve) {
     this.source = source;
+    this.originalLine = cause.getLine();
+
+    ErrorCollector collector = source != null ? source.getErrorCollector() : null;
+    if (resolve && collector instanceof CoalescingErrorCollector) {
+      root = ((CoalescingErrorCollector) collector).findRoot(cause, source);
+    }
+    // a follow-on error is not reported, so its position is left as is
+    if (resolve && root == null) {
+      resolvePosition(cause);
+    }
 
+    this.cause = cause;
+    cause.setSourceLocator(source != null ? source.getName() : null);
+  }
+
+  /** Moves the position of the error to where the user is most likely to find its cause. */
+  private void resolvePosition(SyntaxException cause) {
     /** Returns the valid error line for invalid SyntaxException. */
     String message = cause.getMessage();
     boolean isEOF = message != null && message.contains("EOF");
@@ -140,9 +170,6 @@ public class SyntaxErrorMessage extends Message {
         }
       }
     }
-
-    this.cause = cause;
-    cause.setSourceLocator(source != null ? source.getName() : null);
   }
 
   /** Returns the underlying SyntaxException. */
@@ -150,6 +177,30 @@ public class SyntaxErrorMessage extends Message {
     return this.cause;
   }
 
+  /**
+   * Returns the error this one follows on from, as found by a {@link CoalescingErrorCollector}.
+   *
+   * @return the root error or {@code null} if this error is reported on its own
+   */
+  public SyntaxErrorMessage getRoot() {
+    return root;
+  }
+
+  /** Returns the line the parser or visitor gave the error, before its position was resolved. */
+  public int getOriginalLine() {
+    return originalLine;
+  }
+
+  /** Returns the number of follow-on errors coalesced into this one. */
+  public int getFollowOnCount() {
+    return followOnCount;
+  }
+
+  /** Counts a follow-on error coalesced into this one by a {@link CoalescingErrorCollector}. */
+  public void addFollowOn() {
+    followOnCount += 1;
+  }
+
   /** Returns the valid error line for EOF SyntaxException. */
   private int getValidErrorLine(int line) {
     while (line >= 0) {
@@ -185,6 +236,10 @@ public class SyntaxErrorMessage extends Message {
     String sample = source.getSample(line, column, janitor);
 
     output.print(name + ": " + line + ": " + getCause().getMessage());
+    if (followOnCount > 0) {
+      output.print(
+          " (" + followOnCount + " follow-on error" + (followOnCount > 1 ? "s" : "") + ")");
+    }
     if (sample != null) {
       output.println();
       output.print(sample);
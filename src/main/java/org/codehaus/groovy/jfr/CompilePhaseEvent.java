@@ -0,0 +1,50 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.codehaus.groovy.CompilePhase")
+@Label("Groovy Compile Phase")
+@Description("A phase of a Groovy compilation unit")
+@Category({"Groovy", "Compiler"})
+@Enabled(false)
+@StackTrace(false)
+final class CompilePhaseEvent extends Event {
+
+  @Label("Phase")
+  String phase;
+
+  @Label("Sources")
+  @Description("The names of the first sources of the unit")
+  String sources;
+
+  @Label("Source Count")
+  int sourceCount;
+
+  @Label("Configuration")
+  @Description("Fingerprint of the compiler configuration")
+  String configuration;
+}
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.jfr;
+
+import static org.codehaus.groovy.reflection.android.AndroidSupport.isDalvik;
+import static org.codehaus.groovy.reflection.android.AndroidSupport.isRunningAndroid;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.groovy.util.SystemUtil;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.vmplugin.VMPlugin;
+
+/**
+ * Java Flight Recorder events of the compiler and the runtime, so that a latency spike in a
+ * recording can be linked to a script compile, a storm of call site invalidations or a meta class
+ * change. The events are:
+ *
+ * <ul>
+ *   <li>{@code org.codehaus.groovy.CompilePhase}, for every phase of a {@link
+ *       org.codehaus.groovy.control.ParallelCompilationUnit} or {@link
+ *       org.codehaus.groovy.control.AnalysisCompilationUnit}, with the source names and a
+ *       fingerprint of the configuration,
+ *   <li>{@code org.codehaus.groovy.CallSiteInvalidation}, for every {@link
+ *       VMPlugin#invalidateCallSites()}, with the class that triggered it,
+ *   <li>{@code org.codehaus.groovy.MetaClassChange}, for every meta class set in the registry once
+ *       {@link #install()} has been called, and
+ *   <li>{@code org.codehaus.groovy.VMPluginSelection}, when the VM plugin is chosen.
+ * </ul>
+ *
+ * The events are only hooked in with {@code -Dgroovy.jfr=true}. Otherwise the methods of this class
+ * do nothing and neither the Flight Recorder nor the event classes are loaded, which would slow
+ * down the startup; nor are they where there is no Flight Recorder, as on Android. Once hooked in,
+ * the events are disabled by default and only recorded if a recording enables them, for example
+ * with {@code jfr configure +org.codehaus.groovy.CompilePhase#enabled=true}. A disabled event costs
+ * a check per phase or invalidation.
+ *
+ * <p>The meta class registry cannot be listened to while it is being created, so {@code
+ * MetaClassChange} events are only recorded once the application has called {@link #install()}.
+ */
+public final class GroovyEvents {
+
+  private static final boolean ENABLED =
+      SystemUtil.getBooleanSafe("groovy.jfr") && isFlightRecorderPresent();
+
+  private static final AtomicBoolean INSTALLED = new AtomicBoolean();
+
+  private GroovyEvents() {}
+
+  private static boolean isFlightRecorderPresent() {
+    if (isRunningAndroid() || isDalvik()) return false;
+    try {
+      Class.forName("jdk.jfr.Event", false, GroovyEvents.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the events are hooked in: {@code groovy.jfr} is set and the runtime has a
+   * Flight Recorder.
+   */
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Records meta class changes from now on. Call this once at startup, after the Groovy runtime has
+   * been initialized; the registry cannot be listened to while it is being created. Does nothing
+   * unless the events are {@linkplain #isEnabled() enabled}.
+   */
+  public static void install() {
+    if (ENABLED && INSTALLED.compareAndSet(false, true)) JfrEvents.installMetaClassListener();
+  }
+
+  /**
+   * Adds the recording of {@code CompilePhase} events to the given compilation unit.
+   *
+   * @param unit the compilation unit
+   */
+  public static void addPhaseEvents(CompilationUnit unit) {
+    if (ENABLED) JfrEvents.addPhaseEvents(unit);
+  }
+
+  /**
+   * Runs the invalidation of the call sites, recorded as a {@code CallSiteInvalidation} event.
+   *
+   * @param invalidation the invalidation of the VM plugin
+   */
+  public static void invalidateCallSites(Runnable invalidation) {
+    if (ENABLED) {
+      JfrEvents.invalidateCallSites(invalidation);
+    } else {
+      invalidation.run();
+    }
+  }
+
+  /**
+   * Records the selection of the VM plugin.
+   *
+   * @param plugin the selected plugin
+   * @param javaVersion the feature version of the running Java
+   */
+  public static void pluginSelected(VMPlugin plugin, int javaVersion) {
+    if (ENABLED) JfrEvents.pluginSelected(plugin, javaVersion);
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.jfr;
+
+import groovy.lang.GroovySystem;
+import groovy.lang.MetaClass;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.vmplugin.VMPlugin;
+import org.codehaus.groovy.vmplugin.VMPluginFactory;
+
+/** The recording of the events, only loaded where there is a Flight Recorder. */
+final class JfrEvents {
+
+  private static final int MAX_SOURCE_NAMES = 3;
+
+  private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+  private JfrEvents() {}
+
+  static void installMetaClassListener() {
+    GroovySystem.getMetaClassRegistry()
+        .addMetaClassRegistryChangeEventListener(
+            change -> {
+              MetaClassChangeEvent event = new MetaClassChangeEvent();
+              if (!event.shouldCommit()) return;
+              event.changedClass = change.getClassToUpdate();
+              event.perInstance = change.isPerInstanceMetaClassChange();
+              event.oldMetaClass = typeName(change.getOldMetaClass());
+              event.newMetaClass = typeName(change.getNewMetaClass());
+              event.commit();
+            });
+  }
+
+  static void addPhaseEvents(CompilationUnit unit) {
+    CompilePhaseEvent[] current = new CompilePhaseEvent[1];
+    for (int phase = Phases.INITIALIZATION; phase <= Phases.FINALIZATION; phase++) {
+      int recordedPhase = phase;
+      unit.addFirstPhaseOperation(
+          new CompilationUnit.IPrimaryClassNodeOperation() {
+            @Override
+            public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {}
+
+            @Override
+            public void doPhaseOperation(CompilationUnit unit) {
+              CompilePhaseEvent event = new CompilePhaseEvent();
+              if (!event.isEnabled()) return;
+              event.begin();
+              current[0] = event;
+            }
+          },
+          phase);
+      unit.addPhaseOperation(
+          new CompilationUnit.ISourceUnitOperation() {
+            @Override
+            public void call(SourceUnit source) {}
+
+            @Override
+            public void doPhaseOperation(CompilationUnit unit) {
+              CompilePhaseEvent event = current[0];
+              if (event == null) return;
+              current[0] = null;
+              event.end();
+              if (!event.shouldCommit()) return;
+              event.phase = Phases.getDescription(recordedPhase);
+              describeSources(unit, event);
+              event.configuration = fingerprint(unit.getConfiguration());
+              event.commit();
+            }
+          },
+          phase);
+    }
+  }
+
+  private static void describeSources(CompilationUnit unit, CompilePhaseEvent event) {
+    StringBuilder names = new StringBuilder();
+    int count = 0;
+    for (Iterator<SourceUnit> sources = unit.iterator(); sources.hasNext(); ) {
+      SourceUnit source = sources.next();
+      if (count < MAX_SOURCE_NAMES) {
+        if (count > 0) names.append(", ");
+        names.append(source.getName());
+      }
+      count += 1;
+    }
+    if (count > MAX_SOURCE_NAMES)
+      names.append(" and ").append(count - MAX_SOURCE_NAMES).append(" more");
+    event.sources = names.toString();
+    event.sourceCount = count;
+  }
+
+  /** Hashes the settings which change the output of a compile, the classpath included. */
+  private static String fingerprint(CompilerConfiguration configuration) {
+    int hash =
+        Objects.hash(
+            configuration.getTargetBytecode(),
+            configuration.getSourceEncoding(),
+            configuration.getParameters(),
+            configuration.isPreviewFeatures(),
+            configuration.getScriptBaseClass(),
+            new TreeMap<>(configuration.getOptimizationOptions()),
+            configuration.getDisabledGlobalASTTransformations(),
+            configuration.getClasspath());
+    for (CompilationCustomizer customizer : configuration.getCompilationCustomizers()) {
+      hash = 31 * hash + customizer.getClass().getName().hashCode();
+    }
+    return String.format("%08x", hash);
+  }
+
+  static void invalidateCallSites(Runnable invalidation) {
+    CallSiteInvalidationEvent event = new CallSiteInvalidationEvent();
+    if (!event.isEnabled()) {
+      invalidation.run();
+      return;
+    }
+    event.begin();
+    invalidation.run();
+    event.end();
+    if (!event.shouldCommit()) return;
+    Optional<StackWalker.StackFrame> trigger =
+        STACK_WALKER.walk(frames -> frames.filter(JfrEvents::isOutsideRuntime).findFirst());
+    if (trigger.isPresent()) {
+      event.triggeringClass = trigger.get().getClassName();
+      event.triggeringMethod = trigger.get().getMethodName();
+    }
+    event.commit();
+  }
+
+  private static boolean isOutsideRuntime(StackWalker.StackFrame frame) {
+    String name = frame.getClassName();
+    return !(name.startsWith("org.codehaus.groovy.")
+        || name.startsWith("org.apache.groovy.")
+        || name.startsWith("groovy.")
+        || name.startsWith("java.")
+        || name.startsWith("jdk.")
+        || name.startsWith("sun."));
+  }
+
+  static void pluginSelected(VMPlugin plugin, int javaVersion) {
+    VMPluginSelectionEvent event = new VMPluginSelectionEvent();
+    if (!event.shouldCommit()) return;
+    Class<?> type = plugin.getClass();
+    event.javaVersion = javaVersion;
+    // the plugin recording the invalidation of call sites subclasses the selected one
+    event.plugin = type.getEnclosingClass() == VMPluginFactory.class ? type.getSuperclass() : type;
+    event.pluginVersion = plugin.getVersion();
+    event.commit();
+  }
+
+  private static String typeName(MetaClass metaClass) {
+    return metaClass != null ? metaClass.getClass().getName() : null;
+  }
+}
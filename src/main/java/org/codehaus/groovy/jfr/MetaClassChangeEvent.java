@@ -0,0 +1,46 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.codehaus.groovy.MetaClassChange")
+@Label("Groovy Meta Class Change")
+@Description("Replacement of the meta class of a class or an instance in the registry")
+@Category({"Groovy", "Runtime"})
+@Enabled(false)
+final class MetaClassChangeEvent extends Event {
+
+  @Label("Class")
+  Class<?> changedClass;
+
+  @Label("Per Instance")
+  boolean perInstance;
+
+  @Label("Old Meta Class")
+  String oldMetaClass;
+
+  @Label("New Meta Class")
+  String newMetaClass;
+}
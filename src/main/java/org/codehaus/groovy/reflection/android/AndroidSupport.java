@@ -18,8 +18,33 @@
  */
 package org.codehaus.groovy.reflection.android;
 
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Describes the runtime Groovy is running on. Everything is detected once, when this class is
+ * initialized, so callers can branch on the results as cheaply as on constants.
+ */
 public abstract class AndroidSupport {
+
+  /** The kind of virtual machine executing the Groovy runtime. */
+  public enum VMKind {
+    /** The Dalvik VM of Android 4.4 and older. */
+    DALVIK,
+    /** The Android Runtime, which still reports itself as Dalvik 2.0 or newer. */
+    ART,
+    /** The HotSpot VM of OpenJDK and its derivatives. */
+    HOTSPOT,
+    /** Any other Java virtual machine. */
+    OTHER
+  }
+
   private static final boolean IS_ANDROID;
+  private static final boolean IS_DALVIK;
+  private static final VMKind VM_KIND;
+  private static final int API_LEVEL;
+  private static final boolean METHOD_HANDLES_SUPPORTED;
+  private static final boolean INDY_SUPPORTED;
+  private static final boolean INVOKE_SPECIAL_SUPPORTED;
 
   static {
     boolean isAndroid = true;
@@ -29,13 +54,101 @@ public abstract class AndroidSupport {
       isAndroid = false;
     }
     IS_ANDROID = isAndroid;
+
+    String vmName = getSystemProperty("java.vm.name");
+    IS_DALVIK = vmName.contains("Dalvik");
+    if (IS_DALVIK) {
+      VM_KIND = getSystemProperty("java.vm.version").startsWith("1.") ? VMKind.DALVIK : VMKind.ART;
+    } else if (vmName.contains("HotSpot") || vmName.startsWith("OpenJDK")) {
+      VM_KIND = VMKind.HOTSPOT;
+    } else {
+      VM_KIND = VMKind.OTHER;
+    }
+
+    API_LEVEL = IS_ANDROID || IS_DALVIK ? findApiLevel() : 0;
+    // java.lang.invoke is available on Android since Oreo (API level 26)
+    METHOD_HANDLES_SUPPORTED = !(IS_ANDROID || IS_DALVIK) || API_LEVEL >= 26;
+    // the indy call sites of Groovy are mutable and guarded by switch points
+    INDY_SUPPORTED =
+        METHOD_HANDLES_SUPPORTED
+            && hasClass("java.lang.invoke.MutableCallSite")
+            && hasClass("java.lang.invoke.SwitchPoint");
+    INVOKE_SPECIAL_SUPPORTED = METHOD_HANDLES_SUPPORTED && hasPrivateLookupIn();
+  }
+
+  private static String getSystemProperty(String key) {
+    try {
+      return System.getProperty(key, "");
+    } catch (SecurityException e) {
+      return "";
+    }
+  }
+
+  private static int findApiLevel() {
+    try {
+      return Class.forName("android.os.Build$VERSION").getField("SDK_INT").getInt(null);
+    } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+      return 0;
+    }
+  }
+
+  private static boolean hasClass(String className) {
+    try {
+      Class.forName(className, false, AndroidSupport.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  private static boolean hasPrivateLookupIn() {
+    try {
+      MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+      return true;
+    } catch (NoSuchMethodException | LinkageError e) {
+      return false;
+    }
   }
 
   public static boolean isRunningAndroid() {
     return IS_ANDROID;
   }
 
+  /**
+   * Returns {@code true} if the VM identifies itself as Dalvik, which is the case for both the
+   * Dalvik VM and ART.
+   */
   public static boolean isDalvik() {
-    return System.getProperty("java.vm.name", "").contains("Dalvik");
+    return IS_DALVIK;
+  }
+
+  /** Returns {@code true} if running on the Android Runtime. */
+  public static boolean isArt() {
+    return VM_KIND == VMKind.ART;
+  }
+
+  /** Returns the kind of virtual machine the runtime is running on. */
+  public static VMKind getVMKind() {
+    return VM_KIND;
+  }
+
+  /** Returns the Android API level, or {@code 0} if not running on Android. */
+  public static int getApiLevel() {
+    return API_LEVEL;
+  }
+
+  /** Returns {@code true} if {@code java.lang.invoke} method handles can be used. */
+  public static boolean isMethodHandlesSupported() {
+    return METHOD_HANDLES_SUPPORTED;
+  }
+
+  /** Returns {@code true} if the runtime supports the call sites of indy compiled Groovy code. */
+  public static boolean isIndySupported() {
+    return INDY_SUPPORTED;
+  }
+
+  /** Returns {@code true} if method handles for {@code invokespecial} calls can be obtained. */
+  public static boolean isInvokeSpecialSupported() {
+    return INVOKE_SPECIAL_SUPPORTED;
   }
 }
@@ -0,0 +1,322 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.reflection.android;
+
+import groovyjarjaropenbeans.Transient;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Lightweight alternative to the openbeans {@code Introspector}, which is slow and reflection
+ * heavy on Android. The properties of a class are found in one pass over {@link Class#getMethods()}
+ * and cached per class. Properties whose getter or setter is annotated with {@link Transient} are
+ * skipped. For classes listed in the build-time {@link BeanPropertiesIndex}, the accessor
+ * signatures are only hashed to check that the class still matches the index; their annotations
+ * are not read and only the indexed accessors are looked up. A {@link Transient} marker added or
+ * removed without changing any signature is not detected until the index is regenerated.
+ *
+ * <p>This is a standalone API for code that reads or writes bean properties itself, such as
+ * serializers. It does not change how the runtime finds properties: {@code MetaClassImpl} still
+ * gets them from the {@code Introspector}, in private methods that a subclass or metaclass
+ * creation handle cannot replace.
+ */
+public final class BeanProperties {
+
+  private static final ClassValue<BeanProperties> CACHE =
+      new ClassValue<BeanProperties>() {
+        @Override
+        protected BeanProperties computeValue(Class<?> type) {
+          return new BeanProperties(type);
+        }
+      };
+
+  private final Class<?> type;
+  private final Map<String, Property> properties;
+
+  private BeanProperties(Class<?> type) {
+    this.type = type;
+    Map<String, Property> properties = fromIndex(type);
+    this.properties =
+        Collections.unmodifiableMap(properties != null ? properties : introspect(type));
+  }
+
+  /**
+   * Builds the properties from the build-time {@link BeanPropertiesIndex}, looking up only the
+   * indexed accessors.
+   *
+   * @return the properties or {@code null} if the class is not indexed or the index is stale
+   */
+  private static Map<String, Property> fromIndex(Class<?> type) {
+    BeanPropertiesIndex.IndexedClass indexed = BeanPropertiesIndex.lookup(type.getName());
+    if (indexed == null || accessorHash(type.getMethods()) != indexed.accessorHash) return null;
+
+    Map<String, Property> properties = new TreeMap<>();
+    try {
+      for (BeanPropertiesIndex.Entry entry : indexed.entries) {
+        Method getter = entry.getterName != null ? type.getMethod(entry.getterName) : null;
+        Class<?> propertyType =
+            getter != null
+                ? getter.getReturnType()
+                : BeanPropertiesIndex.resolve(entry.typeName, type.getClassLoader());
+        if (!propertyType.getName().equals(entry.typeName)) return null;
+        Method setter =
+            entry.setterName != null ? type.getMethod(entry.setterName, propertyType) : null;
+        properties.put(entry.name, new Property(entry.name, propertyType, getter, setter));
+      }
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+    return properties;
+  }
+
+  /**
+   * Hashes the signatures of all the methods that {@link #introspect} considers as accessors, so
+   * that an accessor added, removed or changed since the index was generated is noticed. The hash
+   * does not depend on the order of the methods.
+   */
+  static int accessorHash(Method[] methods) {
+    int hash = 0;
+    for (Method method : methods) {
+      if (Modifier.isStatic(method.getModifiers())
+          || method.isBridge()
+          || method.getDeclaringClass() == Object.class) {
+        continue;
+      }
+
+      String name = method.getName();
+      int parameterCount = method.getParameterCount();
+      if (parameterCount == 0
+          ? !name.startsWith("is") && !name.startsWith("get")
+          : parameterCount != 1 || !name.startsWith("set")) {
+        continue;
+      }
+      int h = name.hashCode() * 31 + method.getReturnType().getName().hashCode();
+      if (parameterCount == 1) h = h * 31 + method.getParameterTypes()[0].getName().hashCode();
+      hash += h * 0x9E3779B1;
+    }
+    return hash;
+  }
+
+  /** Finds the properties of a class by introspecting its public methods. */
+  static Map<String, Property> introspect(Class<?> type) {
+    Map<String, Method> getters = new HashMap<>();
+    Map<String, List<Method>> setters = new HashMap<>();
+    Set<String> transients = new HashSet<>();
+    for (Method method : type.getMethods()) {
+      if (Modifier.isStatic(method.getModifiers())
+          || method.isBridge()
+          || method.getDeclaringClass() == Object.class) {
+        continue;
+      }
+
+      String name = method.getName();
+      int parameterCount = method.getParameterCount();
+      Class<?> returnType = method.getReturnType();
+      String propertyName;
+      if (parameterCount == 0 && name.startsWith("is") && returnType == boolean.class) {
+        propertyName = decapitalize(name.substring(2));
+        if (propertyName.isEmpty()) continue;
+        getters.put(propertyName, method);
+      } else if (parameterCount == 0 && name.startsWith("get") && returnType != void.class) {
+        propertyName = decapitalize(name.substring(3));
+        if (propertyName.isEmpty()) continue;
+        getters.merge(propertyName, method, (other, getter) -> other); // isX() wins over getX()
+      } else if (parameterCount == 1 && name.startsWith("set") && returnType == void.class) {
+        propertyName = decapitalize(name.substring(3));
+        if (propertyName.isEmpty()) continue;
+        setters.computeIfAbsent(propertyName, k -> new ArrayList<>(1)).add(method);
+      } else {
+        continue;
+      }
+
+      Transient marker = method.getAnnotation(Transient.class);
+      if (marker != null && marker.value()) transients.add(propertyName);
+    }
+
+    Map<String, Property> properties = new TreeMap<>();
+    for (Map.Entry<String, Method> entry : getters.entrySet()) {
+      String name = entry.getKey();
+      if (transients.contains(name)) continue;
+      Method getter = entry.getValue();
+      Method setter = null;
+      for (Method candidate : setters.getOrDefault(name, Collections.emptyList())) {
+        if (candidate.getParameterTypes()[0] == getter.getReturnType()) setter = candidate;
+      }
+      properties.put(name, new Property(name, getter.getReturnType(), getter, setter));
+    }
+    for (Map.Entry<String, List<Method>> entry : setters.entrySet()) {
+      String name = entry.getKey();
+      // write-only properties are ambiguous if their setter is overloaded
+      if (transients.contains(name)
+          || properties.containsKey(name)
+          || entry.getValue().size() != 1) {
+        continue;
+      }
+      Method setter = entry.getValue().get(0);
+      properties.put(name, new Property(name, setter.getParameterTypes()[0], null, setter));
+    }
+    return properties;
+  }
+
+  /** Same rules as {@code Introspector.decapitalize}: "FooBah" becomes "fooBah", "URL" stays. */
+  private static String decapitalize(String name) {
+    if (name.isEmpty()
+        || (name.length() > 1
+            && Character.isUpperCase(name.charAt(1))
+            && Character.isUpperCase(name.charAt(0)))) {
+      return name;
+    }
+    return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+  }
+
+  /**
+   * Returns the cached bean properties of the given class.
+   *
+   * @param type the bean class
+   * @return the properties, computed on first access
+   */
+  public static BeanProperties of(Class<?> type) {
+    return CACHE.get(type);
+  }
+
+  /** Returns the introspected class. */
+  public Class<?> getType() {
+    return type;
+  }
+
+  /** Returns the non-transient properties, ordered by name. */
+  public Collection<Property> getProperties() {
+    return properties.values();
+  }
+
+  /**
+   * Returns the named property.
+   *
+   * @param name the property name
+   * @return the property or {@code null} if there is no such non-transient property
+   */
+  public Property getProperty(String name) {
+    return properties.get(name);
+  }
+
+  /** A bean property with its accessors. */
+  public static final class Property {
+    private final String name;
+    private final Class<?> type;
+    private final Method getter;
+    private final Method setter;
+    private final MethodHandle getterHandle;
+    private final MethodHandle setterHandle;
+
+    private Property(String name, Class<?> type, Method getter, Method setter) {
+      this.name = name;
+      this.type = type;
+      this.getter = getter;
+      this.setter = setter;
+      this.getterHandle = unreflect(getter);
+      this.setterHandle = unreflect(setter);
+    }
+
+    private static MethodHandle unreflect(Method method) {
+      if (method == null || !AndroidSupport.isMethodHandlesSupported()) return null;
+      try {
+        return MethodHandles.publicLookup().unreflect(method);
+      } catch (IllegalAccessException e) {
+        return null;
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Class<?> getType() {
+      return type;
+    }
+
+    /** Returns the read method or {@code null} for a write-only property. */
+    public Method getGetter() {
+      return getter;
+    }
+
+    /** Returns the write method or {@code null} for a read-only property. */
+    public Method getSetter() {
+      return setter;
+    }
+
+    public boolean isReadable() {
+      return getter != null;
+    }
+
+    public boolean isWritable() {
+      return setter != null;
+    }
+
+    /**
+     * Reads the property of the given bean, through a method handle where the runtime supports them
+     * and the getter is accessible, or else through reflection.
+     *
+     * @param bean the bean to read from
+     * @return the property value
+     * @throws UnsupportedOperationException if the property is write-only
+     */
+    public Object get(Object bean) throws Throwable {
+      if (getterHandle != null) return getterHandle.invoke(bean);
+      if (getter == null) throw new UnsupportedOperationException(name + " is write-only");
+      return invoke(getter, bean);
+    }
+
+    /**
+     * Writes the property of the given bean, through a method handle where the runtime supports
+     * them and the setter is accessible, or else through reflection.
+     *
+     * @param bean the bean to write to
+     * @param value the new property value
+     * @throws UnsupportedOperationException if the property is read-only
+     */
+    public void set(Object bean, Object value) throws Throwable {
+      if (setterHandle != null) {
+        setterHandle.invoke(bean, value);
+        return;
+      }
+      if (setter == null) throw new UnsupportedOperationException(name + " is read-only");
+      invoke(setter, bean, value);
+    }
+
+    private static Object invoke(Method method, Object bean, Object... args) throws Throwable {
+      try {
+        return method.invoke(bean, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+}
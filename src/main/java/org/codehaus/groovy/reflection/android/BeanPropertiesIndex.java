@@ -0,0 +1,248 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.reflection.android;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Build-time index of bean properties, generated by the {@code generateBeanPropertiesIndex} task
+ * and bundled as {@value #RESOURCE}. It lets {@link BeanProperties} resolve the accessors of known
+ * classes by name instead of introspecting them. This class is for internal use only.
+ *
+ * <p>The resource is a {@link java.io.DataOutput} stream: the magic number, the format version, the
+ * number of classes and, for each class, its name, its {@link BeanProperties#accessorHash accessor
+ * hash} and number of properties followed by the name, type name, getter name and setter name of
+ * each property (empty if there is no such accessor).
+ */
+public final class BeanPropertiesIndex {
+
+  public static final String RESOURCE = "META-INF/groovy/bean-properties.idx";
+
+  private static final int MAGIC = 0x47425049;
+
+  private static final int VERSION = 2;
+
+  private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>(16);
+
+  static {
+    for (Class<?> primitive :
+        new Class<?>[] {
+          boolean.class, byte.class, char.class, short.class,
+          int.class, long.class, float.class, double.class
+        }) {
+      PRIMITIVES.put(primitive.getName(), primitive);
+    }
+  }
+
+  private BeanPropertiesIndex() {}
+
+  /** The indexed properties of a class. */
+  static final class IndexedClass {
+    final int accessorHash;
+    final Entry[] entries;
+
+    IndexedClass(int accessorHash, Entry[] entries) {
+      this.accessorHash = accessorHash;
+      this.entries = entries;
+    }
+  }
+
+  /** An indexed property of a class. */
+  static final class Entry {
+    final String name;
+    final String typeName;
+    final String getterName;
+    final String setterName;
+
+    Entry(String name, String typeName, String getterName, String setterName) {
+      this.name = name;
+      this.typeName = typeName;
+      this.getterName = getterName;
+      this.setterName = setterName;
+    }
+  }
+
+  /**
+   * Returns the indexed properties of a class.
+   *
+   * @param className the binary name of the class
+   * @return the properties or {@code null} if the class is not indexed
+   */
+  static IndexedClass lookup(String className) {
+    return Holder.INDEX.get(className);
+  }
+
+  /**
+   * Resolves an indexed type name, as returned by {@link Class#getName()}.
+   *
+   * @param typeName the type name
+   * @param loader the class loader of the bean class
+   * @return the type
+   */
+  static Class<?> resolve(String typeName, ClassLoader loader) throws ClassNotFoundException {
+    Class<?> primitive = PRIMITIVES.get(typeName);
+    return primitive != null ? primitive : Class.forName(typeName, false, loader);
+  }
+
+  private static Map<String, IndexedClass> load() {
+    try (InputStream in =
+        BeanPropertiesIndex.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+      if (in == null) return Collections.emptyMap();
+
+      DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+      if (data.readInt() != MAGIC || data.readUnsignedShort() != VERSION) {
+        throw new IOException("unrecognized format");
+      }
+      int classCount = data.readInt();
+      Map<String, IndexedClass> index = new HashMap<>(classCount * 2);
+      for (int i = 0; i < classCount; i++) {
+        String className = data.readUTF();
+        int accessorHash = data.readInt();
+        Entry[] entries = new Entry[data.readUnsignedShort()];
+        for (int j = 0; j < entries.length; j++) {
+          entries[j] =
+              new Entry(data.readUTF(), data.readUTF(), nullIfEmpty(data), nullIfEmpty(data));
+        }
+        index.put(className, new IndexedClass(accessorHash, entries));
+      }
+      return index;
+    } catch (IOException e) {
+      Logger log = Logger.getLogger(BeanPropertiesIndex.class.getName());
+      if (log.isLoggable(Level.FINE)) {
+        log.fine("Failed to read bean properties index `" + RESOURCE + "`: " + e);
+      }
+      return Collections.emptyMap();
+    }
+  }
+
+  private static String nullIfEmpty(DataInputStream data) throws IOException {
+    String text = data.readUTF();
+    return text.isEmpty() ? null : text;
+  }
+
+  private static final class Holder {
+    static final Map<String, IndexedClass> INDEX = load();
+  }
+
+  /**
+   * Writes the index of the public classes found on the class path in the given packages (including
+   * their sub-packages).
+   *
+   * <pre>
+   * java -cp ... org.codehaus.groovy.reflection.android.BeanPropertiesIndex &lt;output file&gt; &lt;package&gt;...
+   * </pre>
+   */
+  public static void main(String[] args) throws IOException {
+    File output = new File(args[0]);
+    List<String> prefixes = Arrays.asList(args).subList(1, args.length);
+
+    Collection<String> classNames = new TreeSet<>();
+    for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      File file = new File(entry);
+      if (file.isDirectory()) {
+        Path root = file.toPath();
+        try (Stream<Path> paths = Files.walk(root)) {
+          paths.forEach(
+              path -> addClassName(classNames, prefixes, root.relativize(path).toString()));
+        }
+      } else if (file.isFile()) {
+        try (ZipFile zip = new ZipFile(file)) {
+          for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+            addClassName(classNames, prefixes, e.nextElement().getName());
+          }
+        }
+      }
+    }
+
+    Map<String, Collection<BeanProperties.Property>> index = new TreeMap<>();
+    Map<String, Integer> accessorHashes = new HashMap<>();
+    ClassLoader loader = BeanPropertiesIndex.class.getClassLoader();
+    for (String className : classNames) {
+      try {
+        Class<?> type = Class.forName(className, false, loader);
+        if (!Modifier.isPublic(type.getModifiers()) || type.isInterface() || type.isEnum()) {
+          continue;
+        }
+        Collection<BeanProperties.Property> properties = BeanProperties.introspect(type).values();
+        if (!properties.isEmpty()) {
+          index.put(className, properties);
+          accessorHashes.put(className, BeanProperties.accessorHash(type.getMethods()));
+        }
+      } catch (ClassNotFoundException | LinkageError ignore) {
+        // optional dependency missing, the class cannot be used at runtime either
+      }
+    }
+
+    output.getParentFile().mkdirs();
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+      out.writeInt(index.size());
+      for (Map.Entry<String, Collection<BeanProperties.Property>> entry : index.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeInt(accessorHashes.get(entry.getKey()));
+        out.writeShort(entry.getValue().size());
+        for (BeanProperties.Property property : entry.getValue()) {
+          out.writeUTF(property.getName());
+          out.writeUTF(property.getType().getName());
+          out.writeUTF(property.isReadable() ? property.getGetter().getName() : "");
+          out.writeUTF(property.isWritable() ? property.getSetter().getName() : "");
+        }
+      }
+    }
+  }
+
+  private static void addClassName(
+      Collection<String> classNames, List<String> prefixes, String path) {
+    if (!path.endsWith(".class") || path.endsWith("-info.class")) return;
+    String className =
+        path.substring(0, path.length() - 6).replace('/', '.').replace(File.separatorChar, '.');
+    for (String prefix : prefixes) {
+      if (className.startsWith(prefix + '.')) {
+        classNames.add(className);
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.reflection.android;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the classes of the class-preload list bundled with the startup jar as {@value #RESOURCE},
+ * which holds the runtime classes in the order they are needed for the first script. Applications
+ * call {@link #preload(ClassLoader)} from a background thread early during startup, so that the
+ * first script finds its classes already loaded and verified.
+ */
+public final class ClassPreloader {
+
+  public static final String RESOURCE = "META-INF/groovy/preload-classes.txt";
+
+  private ClassPreloader() {}
+
+  /**
+   * Loads, without initializing, the classes of the preload list.
+   *
+   * @param loader the class loader of the Groovy runtime
+   * @return the number of classes loaded, {@code 0} if there is no preload list
+   */
+  public static int preload(ClassLoader loader) {
+    int count = 0;
+    try (InputStream in = loader.getResourceAsStream(RESOURCE)) {
+      if (in == null) return 0;
+
+      BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+      String className;
+      while ((className = reader.readLine()) != null) {
+        if (className.isEmpty()) continue;
+        try {
+          Class.forName(className, false, loader);
+          count += 1;
+        } catch (ClassNotFoundException | LinkageError ignore) {
+          // not part of this runtime, e.g. a JVM-only class on Android
+        }
+      }
+    } catch (IOException e) {
+      Logger log = Logger.getLogger(ClassPreloader.class.getName());
+      if (log.isLoggable(Level.FINE)) {
+        log.fine("Failed to read class-preload list `" + RESOURCE + "`: " + e);
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.runtime.execution;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs evaluations of a {@link ScriptPool} concurrently, each on a virtual thread of its own or on
+ * a fixed pool of platform threads.
+ *
+ * <p>Evaluations on virtual threads share the idle script instances of the pool rather than keeping
+ * one per thread. Once a script has been evaluated, the paths it takes through the runtime do not
+ * block its carrier thread: the call site caches of invokedynamic are guarded by a {@code
+ * ReentrantLock} and select methods outside of it, and metaclasses are looked up through {@code
+ * ClassInfo}, whose locks are not monitors.
+ *
+ * <p>The first evaluations are not free of pinning. Linking call sites loads classes and spins
+ * method handle species, metaclass initialization and the first call of a {@code
+ * DefaultGroovyMethods} method enter monitors, and so do {@code ExpandoMetaClass} changes. A
+ * virtual thread blocked on a monitor held by another one pins its carrier until it gets in. On
+ * Java 21 this is not reported by {@code -Djdk.tracePinnedThreads}, which only reports parking
+ * while pinned; record the {@code jdk.JavaMonitorEnter} event with Flight Recorder to see it.
+ * Evaluate a script once before submitting many evaluations of it to keep the first ones from
+ * contending.
+ */
+public final class ConcurrentScriptExecutor implements AutoCloseable {
+
+  private final ScriptPool pool;
+  private final ExecutorService executor;
+  private final boolean virtualThreads;
+
+  private ConcurrentScriptExecutor(
+      ScriptPool pool, ExecutorService executor, boolean virtualThreads) {
+    this.pool = pool;
+    this.executor = executor;
+    this.virtualThreads = virtualThreads;
+  }
+
+  /** Returns true if this runtime has virtual threads, Java 21 or later. */
+  public static boolean isVirtualThreadsAvailable() {
+    ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor();
+    if (executor == null) return false;
+    executor.shutdown();
+    return true;
+  }
+
+  /**
+   * Returns an executor running each evaluation on a virtual thread of its own.
+   *
+   * @throws UnsupportedOperationException if this runtime has no virtual threads
+   */
+  public static ConcurrentScriptExecutor withVirtualThreads(ScriptPool pool) {
+    ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor();
+    if (executor == null) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+    return new ConcurrentScriptExecutor(pool, executor, true);
+  }
+
+  /** Returns an executor running the evaluations on the given number of platform threads. */
+  public static ConcurrentScriptExecutor withPlatformThreads(ScriptPool pool, int threads) {
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "groovy-script-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    return new ConcurrentScriptExecutor(pool, executor, false);
+  }
+
+  /**
+   * Runs the script with the given variables.
+   *
+   * @return the result of the script
+   */
+  public CompletableFuture<Object> submit(Map<String, ?> variables) {
+    return CompletableFuture.supplyAsync(() -> pool.evaluate(variables), executor);
+  }
+
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /** Stops accepting evaluations, the submitted ones still complete. */
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+}
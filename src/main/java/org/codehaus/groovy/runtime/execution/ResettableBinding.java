@@ -0,0 +1,52 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.runtime.execution;
+
+import groovy.lang.Binding;
+
+/**
+ * Binding whose variables are kept in an open-addressed table, so that setting and reading
+ * variables allocates nothing, and which can be {@link #reset()} to be used again for another
+ * evaluation.
+ */
+public class ResettableBinding extends Binding {
+
+  private final VariableTable variables;
+
+  public ResettableBinding() {
+    this(8);
+  }
+
+  /**
+   * @param expectedVariables the number of variables the table is sized for, it grows past it
+   */
+  public ResettableBinding(int expectedVariables) {
+    this(new VariableTable(expectedVariables));
+  }
+
+  private ResettableBinding(VariableTable variables) {
+    super(variables);
+    this.variables = variables;
+  }
+
+  /** Removes all variables, keeping the table for the next evaluation. */
+  public void reset() {
+    variables.clear();
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.runtime.execution;
+
+import groovy.lang.Script;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * Reusable instances of a compiled script, for evaluating the same script many times with different
+ * variables. Each thread keeps the instance it first acquired, together with its {@link
+ * ResettableBinding}, and reuses it for all its later evaluations, so that a steady-state
+ * evaluation creates neither a script nor a binding:
+ *
+ * <pre>
+ * try (ScriptPool.PooledScript script = pool.acquire()) {
+ *   script.setVariable("order", order);
+ *   return script.run();
+ * }
+ * </pre>
+ *
+ * The binding is reset when the script is closed. Fields of the script ({@code @Field}) and changes
+ * to its metaclass are not reset and carry over to the next evaluation on the thread, and so does
+ * the binding seen by a closure the script returned. An evaluation started on a thread whose script
+ * is still in use, from within the script for example, gets an instance of its own, not kept.
+ *
+ * <p>Virtual threads are typically started per task, so they do not keep an instance: they take an
+ * idle instance from a lock-free queue shared by the pool and put it back on close.
+ *
+ * <p>A thread refers to its instance only weakly, the pool holds it, so the instances and the
+ * script class are released with the pool rather than with the threads which used it. The
+ * instances of threads which have terminated are dropped when another thread acquires its first
+ * one, and all the instances when the pool is closed.
+ */
+public final class ScriptPool implements AutoCloseable {
+
+  private final Class<? extends Script> scriptClass;
+  private final int expectedVariables;
+  private final Queue<PooledScript> idle = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<WeakReference<PooledScript>> confined = new ThreadLocal<>();
+  private final Set<PooledScript> confinedScripts = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger created = new AtomicInteger();
+  private volatile boolean closed;
+
+  /**
+   * @param scriptClass the compiled script
+   * @param preinstantiated the number of instances to create upfront, for the first evaluations of
+   *     as many threads
+   */
+  public ScriptPool(Class<? extends Script> scriptClass, int preinstantiated) {
+    this(scriptClass, preinstantiated, 8);
+  }
+
+  /**
+   * @param scriptClass the compiled script
+   * @param preinstantiated the number of instances to create upfront, for the first evaluations of
+   *     as many threads
+   * @param expectedVariables the number of variables the bindings are sized for
+   */
+  public ScriptPool(
+      Class<? extends Script> scriptClass, int preinstantiated, int expectedVariables) {
+    if (preinstantiated < 0) {
+      throw new IllegalArgumentException("preinstantiated must be >= 0: " + preinstantiated);
+    }
+    this.scriptClass = scriptClass;
+    this.expectedVariables = expectedVariables;
+    for (int i = 0; i < preinstantiated; i++) {
+      idle.add(newScript());
+    }
+  }
+
+  private PooledScript newScript() {
+    ResettableBinding binding = new ResettableBinding(expectedVariables);
+    Script script = InvokerHelper.createScript(scriptClass, binding);
+    created.incrementAndGet();
+    return new PooledScript(script, binding);
+  }
+
+  /**
+   * Returns the script instance of the current thread, with an empty binding. It must be closed on
+   * the same thread once the evaluation is done.
+   *
+   * @throws IllegalStateException if the pool is closed
+   */
+  public PooledScript acquire() {
+    if (closed) throw new IllegalStateException("The script pool is closed");
+    Thread thread = Thread.currentThread();
+    if (VirtualThreads.isVirtual(thread)) {
+      PooledScript script = idle.poll();
+      if (script == null) script = newScript();
+      script.inUse = true;
+      script.returnTo = this;
+      return script;
+    }
+    WeakReference<PooledScript> reference = confined.get();
+    PooledScript script = reference != null ? reference.get() : null;
+    if (script == null) {
+      // the first instance of the thread, or the pool was closed since
+      confinedScripts.removeIf(confinedScript -> !confinedScript.owner.isAlive());
+      script = idle.poll();
+      if (script == null) script = newScript();
+      script.owner = thread;
+      confinedScripts.add(script);
+      confined.set(new WeakReference<>(script));
+    } else if (script.inUse) {
+      script = newScript();
+    }
+    script.inUse = true;
+    return script;
+  }
+
+  /**
+   * Runs the script with the given variables.
+   *
+   * @return the result of the script
+   */
+  public Object evaluate(Map<String, ?> variables) {
+    try (PooledScript script = acquire()) {
+      for (Map.Entry<String, ?> variable : variables.entrySet()) {
+        script.setVariable(variable.getKey(), variable.getValue());
+      }
+      return script.run();
+    }
+  }
+
+  public Class<? extends Script> getScriptClass() {
+    return scriptClass;
+  }
+
+  /** Returns the number of script instances created so far. */
+  public int getCreatedCount() {
+    return created.get();
+  }
+
+  /**
+   * Drops the idle instances and those kept by threads. The instances in use are dropped once
+   * closed, and acquiring one fails from now on.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    confinedScripts.clear();
+    idle.clear();
+  }
+
+  /** A script instance, confined to the thread which acquired it until closed. */
+  public static final class PooledScript implements AutoCloseable {
+    private final Script script;
+    private final ResettableBinding binding;
+    private boolean inUse;
+    private ScriptPool returnTo;
+    private Thread owner;
+
+    PooledScript(Script script, ResettableBinding binding) {
+      this.script = script;
+      this.binding = binding;
+    }
+
+    public void setVariable(String name, Object value) {
+      binding.setVariable(name, value);
+    }
+
+    public ResettableBinding getBinding() {
+      return binding;
+    }
+
+    public Script getScript() {
+      return script;
+    }
+
+    /** Runs the script with the variables set so far. */
+    public Object run() {
+      return script.run();
+    }
+
+    /** Resets the binding and gives the script back to the thread, or to the pool. */
+    @Override
+    public void close() {
+      binding.reset();
+      if (script.getBinding() != binding) {
+        // the script replaced its binding
+        script.setBinding(binding);
+      }
+      inUse = false;
+      ScriptPool pool = returnTo;
+      if (pool != null) {
+        returnTo = null;
+        if (!pool.closed) pool.idle.add(this);
+      }
+    }
+  }
+}
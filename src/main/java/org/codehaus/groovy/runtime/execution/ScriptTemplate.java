@@ -0,0 +1,86 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.runtime.execution;
+
+import groovy.lang.Script;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A script compiled by a {@link ScriptTemplateCompiler}: the class shared by all the scripts of the
+ * same shape, and the literal values of this one, passed to the script when it is evaluated.
+ */
+public final class ScriptTemplate {
+
+  private final ScriptTemplateCompiler.Shape shape;
+  private final Object[] values;
+
+  ScriptTemplate(ScriptTemplateCompiler.Shape shape, Object[] values) {
+    this.shape = shape;
+    this.values = values;
+  }
+
+  /** Returns the class of the script, shared by the scripts of the same shape. */
+  public Class<? extends Script> getScriptClass() {
+    return shape.pool.getScriptClass();
+  }
+
+  /** Returns true if the literals of the script were lifted into parameters. */
+  public boolean isParameterized() {
+    return shape.parameterNames.length > 0;
+  }
+
+  /**
+   * Returns the values of the literals lifted into parameters, in source order.
+   *
+   * @return an unmodifiable list
+   */
+  public List<Object> getParameterValues() {
+    return Collections.unmodifiableList(Arrays.asList(values));
+  }
+
+  /**
+   * Runs the script, see {@link ScriptPool}.
+   *
+   * @return the result of the script
+   */
+  public Object evaluate() {
+    return evaluate(Collections.emptyMap());
+  }
+
+  /**
+   * Runs the script with the given variables, see {@link ScriptPool}.
+   *
+   * @return the result of the script
+   */
+  public Object evaluate(Map<String, ?> variables) {
+    try (ScriptPool.PooledScript script = shape.pool.acquire()) {
+      for (Map.Entry<String, ?> variable : variables.entrySet()) {
+        script.setVariable(variable.getKey(), variable.getValue());
+      }
+      String[] names = shape.parameterNames;
+      for (int i = 0; i < names.length; i++) {
+        script.setVariable(names[i], values[i]);
+      }
+      return script.run();
+    }
+  }
+}
@@ -0,0 +1,510 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.runtime.execution;
+
+import static org.codehaus.groovy.ast.tools.GeneralUtils.callThisX;
+import static org.codehaus.groovy.ast.tools.GeneralUtils.callX;
+import static org.codehaus.groovy.ast.tools.GeneralUtils.castX;
+import static org.codehaus.groovy.ast.tools.GeneralUtils.constX;
+import static org.codehaus.groovy.ast.tools.GeneralUtils.declS;
+import static org.codehaus.groovy.ast.tools.GeneralUtils.varX;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+import groovyjarjarantlr4.v4.runtime.CharStreams;
+import groovyjarjarantlr4.v4.runtime.Token;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import org.apache.groovy.parser.antlr4.GroovyLangLexer;
+import org.apache.groovy.parser.antlr4.GroovyLexer;
+import org.codehaus.groovy.ast.ClassCodeExpressionTransformer;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CodeVisitorSupport;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.expr.AttributeExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.DeclarationExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.GStringExpression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.MethodPointerExpression;
+import org.codehaus.groovy.ast.expr.MethodReferenceExpression;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.tools.GroovyClass;
+
+/**
+ * Compiles scripts which differ only in their literal values into one class per shape. The number
+ * and string literals of the script body are lifted into parameters, local variables of the script
+ * body set from the values of the {@link ScriptTemplate} when it is evaluated, so that
+ *
+ * <pre>
+ * amount &gt; 1000 &amp;&amp; country == 'DE'
+ * amount &gt; 250 &amp;&amp; country == 'FR'
+ * </pre>
+ *
+ * share a class. The shape of a script is its token stream without whitespace and comments, with
+ * the lifted literals replaced by their kind and the type of their value, so {@code 100} and
+ * {@code 10000000000}, or {@code 0.1} and {@code 0.1d}, make different shapes. Each script is still
+ * parsed, to find its literals, but only the first script of a shape is compiled to a class, so the
+ * classes loaded stay as many as the shapes however many variants are compiled.
+ *
+ * <p>Literals naming a property or method, those in GString text and those of declarations with
+ * annotations, {@code @Field} for example, are not lifted; they are part of the shape. Neither are
+ * the literals of methods and classes declared by the script. If a shape does not compile once
+ * lifted, under static compilation for example, its scripts are compiled as they are, one class per
+ * script.
+ *
+ * <p>The parameters are locals of the evaluation, so a closure returned by the script keeps the
+ * values of its variant after the evaluation, whatever the script instance evaluates next.
+ *
+ * <p>The compiler owns a copy of the configuration and keeps the most recently used shapes, {@value
+ * #DEFAULT_MAX_SHAPES} by default, whether lifted or compiled as they are. Each shape is defined in
+ * a class loader of its own, so the classes of an evicted shape are unloaded once its templates are
+ * no longer used.
+ */
+public final class ScriptTemplateCompiler implements AutoCloseable {
+
+  private static final String PARAMETER_PREFIX = "$templateParameter";
+
+  /** The number of shapes kept by default. */
+  public static final int DEFAULT_MAX_SHAPES = 1024;
+
+  /** Marks a shape whose scripts are compiled one class per script. */
+  private static final Shape NOT_PARAMETERIZED = new Shape(null, new String[0]);
+
+  private final CompilerConfiguration configuration;
+  private final GroovyClassLoader loader;
+  private final Map<String, CompletableFuture<Shape>> shapes;
+  private final ReentrantLock shapesLock = new ReentrantLock();
+  private final AtomicInteger scripts = new AtomicInteger();
+  private final AtomicInteger sourceNames = new AtomicInteger();
+  private final AtomicInteger compiles = new AtomicInteger();
+
+  public ScriptTemplateCompiler(CompilerConfiguration configuration) {
+    this(Thread.currentThread().getContextClassLoader(), configuration);
+  }
+
+  public ScriptTemplateCompiler(ClassLoader parent, CompilerConfiguration configuration) {
+    this(parent, configuration, DEFAULT_MAX_SHAPES);
+  }
+
+  /**
+   * @param parent the parent of the class loader the scripts are defined in
+   * @param configuration the configuration, copied
+   * @param maxShapes the number of shapes kept, the least recently used ones are evicted
+   */
+  public ScriptTemplateCompiler(
+      ClassLoader parent, CompilerConfiguration configuration, int maxShapes) {
+    if (maxShapes < 1) throw new IllegalArgumentException("maxShapes must be >= 1: " + maxShapes);
+    this.shapes =
+        new LinkedHashMap<String, CompletableFuture<Shape>>(16, 0.75f, true) {
+          private static final long serialVersionUID = -4716306853394530118L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Shape>> eldest) {
+            return size() > maxShapes;
+          }
+        };
+    this.configuration = new CompilerConfiguration(configuration);
+    // the copy leaves the customizers out, see GROOVY-9585
+    this.configuration.addCompilationCustomizers(
+        configuration.getCompilationCustomizers().toArray(new CompilationCustomizer[0]));
+    this.loader = new GroovyClassLoader(parent, this.configuration);
+  }
+
+  /**
+   * Compiles the given script, or only parses it if a script of the same shape was compiled before.
+   *
+   * @throws CompilationFailedException if the script has errors
+   */
+  public ScriptTemplate compile(String source) throws CompilationFailedException {
+    scripts.incrementAndGet();
+    CompilationUnit unit = new CompilationUnit(configuration, null, loader);
+    SourceUnit sourceUnit = unit.addSource(nextSourceName(), source);
+    unit.compile(Phases.CONVERSION);
+    ModuleNode module = sourceUnit.getAST();
+
+    LiteralCollector collector = new LiteralCollector();
+    module.getStatementBlock().visit(collector);
+    List<? extends Token> tokens = tokenize(source);
+    // the literal token at each position, times two, plus one if the position is its minus sign
+    Map<Long, Integer> literalTokens = new HashMap<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      Token token = tokens.get(i);
+      long position = position(token.getLine(), token.getCharPositionInLine() + 1);
+      if (isLiteral(token)) {
+        literalTokens.put(position, i * 2);
+      } else if (token.getType() == GroovyLexer.SUB && i + 1 < tokens.size()) {
+        // a negative number is a literal at the minus sign, whose value is negated
+        int next = tokens.get(i + 1).getType();
+        if (next == GroovyLexer.IntegerLiteral || next == GroovyLexer.FloatingPointLiteral) {
+          literalTokens.put(position, (i + 1) * 2 + 1);
+        }
+      }
+    }
+    // lifts the literals found at a literal token, in source order, with the minus sign of a
+    // negative one; a token found for two literals is not lifted, it is left to the shape
+    ConstantExpression[] lifted = new ConstantExpression[tokens.size()];
+    boolean[] signed = new boolean[tokens.size()];
+    boolean[] ambiguous = new boolean[tokens.size()];
+    for (ConstantExpression literal : collector.literals) {
+      Integer found =
+          literalTokens.get(position(literal.getLineNumber(), literal.getColumnNumber()));
+      if (found == null) continue;
+      int index = found >> 1;
+      if (lifted[index] != null && lifted[index] != literal) ambiguous[index] = true;
+      lifted[index] = literal;
+      signed[index] = (found & 1) != 0;
+    }
+
+    Map<ConstantExpression, String> parameterNames = new IdentityHashMap<>();
+    List<Object> values = new ArrayList<>();
+    StringBuilder shapeKey = new StringBuilder();
+    StringBuilder sourceKey = new StringBuilder();
+    for (int i = 0; i < tokens.size(); i++) {
+      Token token = tokens.get(i);
+      String text = token.getType() == GroovyLexer.NL ? "\n" : token.getText();
+      sourceKey.append(text).append(' ');
+      if (i + 1 < tokens.size() && signed[i + 1] && lifted[i + 1] != null && !ambiguous[i + 1]) {
+        continue;
+      }
+      if (lifted[i] != null && !ambiguous[i]) {
+        parameterNames.put(lifted[i], PARAMETER_PREFIX + values.size());
+        values.add(lifted[i].getValue());
+        // the parameter is declared with the type of the value, an int and a long literal, or a
+        // BigDecimal and a double one, make different shapes
+        shapeKey
+            .append('\0')
+            .append(GroovyLexer.VOCABULARY.getSymbolicName(token.getType()))
+            .append(':')
+            .append(lifted[i].getType().getName());
+      } else {
+        shapeKey.append(text);
+      }
+      shapeKey.append(' ');
+    }
+
+    Shape shape =
+        shape(
+            shapeKey.toString(),
+            () -> {
+              LiteralLifter lifter = new LiteralLifter(sourceUnit, parameterNames);
+              lifter.visitBlockStatement(module.getStatementBlock());
+              if (lifter.replaced != parameterNames.size()) return NOT_PARAMETERIZED;
+              declareParameters(module.getStatementBlock(), parameterNames);
+              Shape defined = define(unit, parameterNames);
+              return defined != null ? defined : NOT_PARAMETERIZED;
+            });
+    if (shape != NOT_PARAMETERIZED) {
+      return new ScriptTemplate(shape, values.toArray());
+    }
+
+    // the shape does not compile lifted, the script is compiled as it is
+    shape =
+        shape(
+            sourceKey.toString(),
+            () -> {
+              CompilationUnit sourceOnly = new CompilationUnit(configuration, null, loader);
+              sourceOnly.addSource(nextSourceName(), source);
+              sourceOnly.compile(Phases.CONVERSION);
+              return define(sourceOnly, new IdentityHashMap<>());
+            });
+    return new ScriptTemplate(shape, new Object[0]);
+  }
+
+  /**
+   * Returns the shape of the given key, defined by the first thread to ask for it while the others
+   * wait. A shape which fails to compile is not kept.
+   */
+  private Shape shape(String key, Supplier<Shape> definition) {
+    CompletableFuture<Shape> shape;
+    boolean defining = false;
+    shapesLock.lock();
+    try {
+      shape = shapes.get(key);
+      if (shape == null) {
+        shape = new CompletableFuture<>();
+        shapes.put(key, shape);
+        defining = true;
+      }
+    } finally {
+      shapesLock.unlock();
+    }
+    if (defining) {
+      try {
+        shape.complete(definition.get());
+      } catch (RuntimeException | Error e) {
+        shapesLock.lock();
+        try {
+          shapes.remove(key, shape);
+        } finally {
+          shapesLock.unlock();
+        }
+        shape.completeExceptionally(e);
+        throw e;
+      }
+    }
+    try {
+      return shape.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw e;
+    }
+  }
+
+  /**
+   * Declares the parameters as local variables at the start of the script body, typed as their
+   * literals and set from the variables bound by {@link ScriptTemplate#evaluate}. Closures capture
+   * the locals, not the binding, which is reset once the evaluation is done.
+   */
+  private static void declareParameters(
+      BlockStatement block, Map<ConstantExpression, String> parameterNames) {
+    List<Statement> declarations = new ArrayList<>(parameterNames.size());
+    for (Map.Entry<ConstantExpression, String> parameter : parameterNames.entrySet()) {
+      ClassNode type = parameter.getKey().getType();
+      String name = parameter.getValue();
+      Expression value = callX(callThisX("getBinding"), "getVariable", constX(name));
+      declarations.add(declS(varX(name, type), castX(type, value)));
+    }
+    block.getStatements().addAll(0, declarations);
+  }
+
+  /**
+   * Compiles the converted unit and defines its classes.
+   *
+   * @return the shape, or {@code null} if the literals were lifted and the unit does not compile
+   */
+  private Shape define(CompilationUnit unit, Map<ConstantExpression, String> parameterNames) {
+    try {
+      unit.compile(Phases.CLASS_GENERATION);
+    } catch (CompilationFailedException e) {
+      if (parameterNames.isEmpty()) throw e;
+      return null;
+    }
+    compiles.incrementAndGet();
+    String scriptName = unit.getFirstClassNode().getName();
+    // a loader per shape, so that an evicted shape can be unloaded
+    ShapeLoader shapeLoader = new ShapeLoader(loader, configuration);
+    Class<?> scriptClass = null;
+    for (GroovyClass generated : unit.getClasses()) {
+      Class<?> type = shapeLoader.define(generated.getName(), generated.getBytes());
+      if (generated.getName().equals(scriptName)) scriptClass = type;
+    }
+    String[] names = new String[parameterNames.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = PARAMETER_PREFIX + i;
+    }
+    return new Shape(new ScriptPool(scriptClass.asSubclass(Script.class), 0), names);
+  }
+
+  private String nextSourceName() {
+    return "ScriptTemplate" + sourceNames.incrementAndGet() + ".groovy";
+  }
+
+  private static List<? extends Token> tokenize(String source) {
+    GroovyLangLexer lexer = new GroovyLangLexer(CharStreams.fromString(source));
+    List<Token> tokens = new ArrayList<>();
+    for (Token token : lexer.getAllTokens()) {
+      if (token.getChannel() == Token.DEFAULT_CHANNEL) tokens.add(token);
+    }
+    return tokens;
+  }
+
+  private static boolean isLiteral(Token token) {
+    int type = token.getType();
+    return type == GroovyLexer.IntegerLiteral
+        || type == GroovyLexer.FloatingPointLiteral
+        || type == GroovyLexer.StringLiteral;
+  }
+
+  private static long position(int line, int column) {
+    return ((long) line << 32) | column;
+  }
+
+  /** Returns the number of scripts compiled or parsed so far. */
+  public int getScriptCount() {
+    return scripts.get();
+  }
+
+  /** Returns the number of classes compiled so far, one per shape. */
+  public int getCompileCount() {
+    return compiles.get();
+  }
+
+  /** Closes the script pools of the shapes kept and the class loader. */
+  @Override
+  public void close() throws IOException {
+    shapesLock.lock();
+    try {
+      for (CompletableFuture<Shape> shape : shapes.values()) {
+        Shape defined = shape.getNow(null);
+        if (defined != null && defined.pool != null) defined.pool.close();
+      }
+      shapes.clear();
+    } finally {
+      shapesLock.unlock();
+    }
+    loader.close();
+  }
+
+  static final class Shape {
+    final ScriptPool pool;
+    final String[] parameterNames;
+
+    Shape(ScriptPool pool, String[] parameterNames) {
+      this.pool = pool;
+      this.parameterNames = parameterNames;
+    }
+  }
+
+  /**
+   * The loader of the classes of one shape. An inner loader would not do, it defines the classes in
+   * its parent, which lives as long as the compiler.
+   */
+  private static final class ShapeLoader extends GroovyClassLoader {
+    ShapeLoader(GroovyClassLoader parent, CompilerConfiguration configuration) {
+      super(parent, configuration);
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+
+  /** Collects the number and string literals which may be lifted, in visiting order. */
+  private static final class LiteralCollector extends CodeVisitorSupport {
+    final List<ConstantExpression> literals = new ArrayList<>();
+
+    @Override
+    public void visitConstantExpression(ConstantExpression expression) {
+      Object value = expression.getValue();
+      if (value instanceof Number || value instanceof String) literals.add(expression);
+    }
+
+    @Override
+    public void visitPropertyExpression(PropertyExpression expression) {
+      expression.getObjectExpression().visit(this);
+      if (!(expression.getProperty() instanceof ConstantExpression)) {
+        expression.getProperty().visit(this);
+      }
+    }
+
+    @Override
+    public void visitAttributeExpression(AttributeExpression expression) {
+      visitPropertyExpression(expression);
+    }
+
+    @Override
+    public void visitMethodCallExpression(MethodCallExpression call) {
+      call.getObjectExpression().visit(this);
+      if (!(call.getMethod() instanceof ConstantExpression)) call.getMethod().visit(this);
+      call.getArguments().visit(this);
+    }
+
+    @Override
+    public void visitMethodPointerExpression(MethodPointerExpression expression) {
+      expression.getExpression().visit(this);
+      if (!(expression.getMethodName() instanceof ConstantExpression)) {
+        expression.getMethodName().visit(this);
+      }
+    }
+
+    @Override
+    public void visitMethodReferenceExpression(MethodReferenceExpression expression) {
+      visitMethodPointerExpression(expression);
+    }
+
+    @Override
+    public void visitGStringExpression(GStringExpression expression) {
+      for (Expression value : expression.getValues()) {
+        value.visit(this);
+      }
+    }
+
+    @Override
+    public void visitDeclarationExpression(DeclarationExpression expression) {
+      if (expression.getAnnotations().isEmpty()) super.visitDeclarationExpression(expression);
+    }
+  }
+
+  /** Replaces the lifted literals by the variables of their parameters. */
+  private static final class LiteralLifter extends ClassCodeExpressionTransformer {
+    private final SourceUnit sourceUnit;
+    private final Map<ConstantExpression, String> parameterNames;
+    int replaced;
+
+    LiteralLifter(SourceUnit sourceUnit, Map<ConstantExpression, String> parameterNames) {
+      this.sourceUnit = sourceUnit;
+      this.parameterNames = parameterNames;
+    }
+
+    @Override
+    protected SourceUnit getSourceUnit() {
+      return sourceUnit;
+    }
+
+    @Override
+    public Expression transform(Expression expression) {
+      if (expression instanceof ConstantExpression) {
+        String name = parameterNames.get(expression);
+        if (name == null) return expression;
+        replaced += 1;
+        VariableExpression parameter = new VariableExpression(name);
+        parameter.setSourcePosition(expression);
+        return parameter;
+      }
+      if (expression instanceof ClosureExpression) {
+        ClosureExpression closure = (ClosureExpression) expression;
+        if (closure.getParameters() != null) {
+          for (Parameter parameter : closure.getParameters()) {
+            if (parameter.hasInitialExpression()) {
+              parameter.setInitialExpression(transform(parameter.getInitialExpression()));
+            }
+          }
+        }
+        closure.getCode().visit(this);
+        return closure;
+      }
+      return super.transform(expression);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.runtime.execution;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Open-addressed map of variable names to values, with linear probing and backward-shift deletion,
+ * so that lookups and updates allocate nothing and {@link #clear()} keeps the table for the next
+ * use. The views do not support removal through their iterators.
+ */
+final class VariableTable extends AbstractMap<String, Object> {
+
+  private static final int MIN_CAPACITY = 8;
+
+  private String[] keys;
+  private Object[] values;
+  private int size;
+
+  VariableTable(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    keys = new String[capacity];
+    values = new Object[capacity];
+  }
+
+  private static int slot(String key, int mask) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  private int indexOf(Object key) {
+    if (!(key instanceof String)) return -1;
+    String[] keys = this.keys;
+    int mask = keys.length - 1;
+    for (int i = slot((String) key, mask); ; i = (i + 1) & mask) {
+      String k = keys[i];
+      if (k == null) return -1;
+      if (k == key || k.equals(key)) return i;
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public Object get(Object key) {
+    int i = indexOf(key);
+    return i >= 0 ? values[i] : null;
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    Objects.requireNonNull(key, "key");
+    int mask = keys.length - 1;
+    int i = slot(key, mask);
+    for (String k; (k = keys[i]) != null; i = (i + 1) & mask) {
+      if (k == key || k.equals(key)) {
+        Object previous = values[i];
+        values[i] = value;
+        return previous;
+      }
+    }
+    keys[i] = key;
+    values[i] = value;
+    if (++size * 2 > keys.length) {
+      rehash(keys.length << 1);
+    }
+    return null;
+  }
+
+  @Override
+  public Object remove(Object key) {
+    int i = indexOf(key);
+    if (i < 0) return null;
+    Object previous = values[i];
+    delete(i);
+    return previous;
+  }
+
+  /** Removes the entry at the given slot and moves up the entries probed past it. */
+  private void delete(int i) {
+    String[] keys = this.keys;
+    int mask = keys.length - 1;
+    for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+      int home = slot(keys[j], mask);
+      // the entry at j may move to i unless its home lies cyclically in (i, j]
+      boolean reachable = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+      if (!reachable) {
+        keys[i] = keys[j];
+        values[i] = values[j];
+        i = j;
+      }
+    }
+    keys[i] = null;
+    values[i] = null;
+    size -= 1;
+  }
+
+  private void rehash(int capacity) {
+    String[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new String[capacity];
+    values = new Object[capacity];
+    int mask = capacity - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      String key = oldKeys[j];
+      if (key == null) continue;
+      int i = slot(key, mask);
+      while (keys[i] != null) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      values[i] = oldValues[j];
+    }
+  }
+
+  /** Removes all entries, keeping the table. */
+  @Override
+  public void clear() {
+    if (size == 0) return;
+    Arrays.fill(keys, null);
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Object>>() {
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        return new Iterator<Map.Entry<String, Object>>() {
+          private int next = advance(0);
+
+          private int advance(int i) {
+            while (i < keys.length && keys[i] == null) {
+              i += 1;
+            }
+            return i;
+          }
+
+          @Override
+          public boolean hasNext() {
+            return next < keys.length;
+          }
+
+          @Override
+          public Map.Entry<String, Object> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int i = next;
+            next = advance(i + 1);
+            return new SimpleEntry<String, Object>(keys[i], values[i]) {
+              private static final long serialVersionUID = 1L;
+
+              @Override
+              public Object setValue(Object value) {
+                put(getKey(), value);
+                return super.setValue(value);
+              }
+            };
+          }
+        };
+      }
+    };
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.runtime.execution;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to the virtual threads of Java 21 and later, looked up reflectively since the sources
+ * target Java 17.
+ */
+final class VirtualThreads {
+
+  private static final MethodHandle IS_VIRTUAL;
+  private static final MethodHandle NEW_THREAD_PER_TASK_EXECUTOR;
+
+  static {
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    MethodHandle isVirtual;
+    MethodHandle newThreadPerTaskExecutor;
+    try {
+      isVirtual =
+          lookup.findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+      newThreadPerTaskExecutor =
+          lookup.findStatic(
+              Executors.class,
+              "newVirtualThreadPerTaskExecutor",
+              MethodType.methodType(ExecutorService.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      isVirtual = null;
+      newThreadPerTaskExecutor = null;
+    }
+    IS_VIRTUAL = isVirtual;
+    NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+  }
+
+  private VirtualThreads() {}
+
+  static boolean isVirtual(Thread thread) {
+    if (IS_VIRTUAL == null) return false;
+    try {
+      return (boolean) IS_VIRTUAL.invokeExact(thread);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /**
+   * Returns an executor starting a virtual thread per task, or {@code null} if virtual threads are
+   * not available, before Java 21 or on Java 19 and 20 without preview features.
+   */
+  static ExecutorService newThreadPerTaskExecutor() {
+    if (NEW_THREAD_PER_TASK_EXECUTOR == null) return null;
+    try {
+      return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invokeExact();
+    } catch (UnsupportedOperationException e) {
+      return null;
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.tools.daemon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.codehaus.groovy.control.CancellationToken;
+import org.codehaus.groovy.control.CoalescingErrorCollector.MoreErrorsMessage;
+import org.codehaus.groovy.control.CompilationCancelledException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.MultipleCompilationErrorsException;
+import org.codehaus.groovy.control.messages.ExceptionMessage;
+import org.codehaus.groovy.control.messages.LocatedMessage;
+import org.codehaus.groovy.control.messages.Message;
+import org.codehaus.groovy.control.messages.SimpleMessage;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.control.messages.WarningMessage;
+import org.codehaus.groovy.syntax.CSTNode;
+import org.codehaus.groovy.syntax.SyntaxException;
+import org.codehaus.groovy.tools.incremental.IncrementalCompiler;
+
+/**
+ * Long-lived compile service, so that repeated builds of an IDE neither start a fresh compiler nor
+ * reload configurations, classpaths and global AST transformations each time. Requests sharing the
+ * same options and classpath reuse a {@link WarmCompiler}; the least recently used of at most
+ * {@value #MAX_WARM_COMPILERS} warm compilers is dropped when another one is needed.
+ *
+ * <p>The daemon reads requests from standard input, or from the connections of a Unix domain socket
+ * when started with {@code --socket <path>}, and handles them one at a time. A request is a
+ * sequence of lines:
+ *
+ * <pre>
+ * option groovy.target.bytecode=17   configuration property, see CompilerConfiguration(Properties)
+ * classpath /path/to/lib.jar         classpath entry, repeatable
+ * target /path/to/classes            output directory, omitted to only analyze the sources
+ * source /path/to/Foo.groovy         source file, repeatable
+ * incremental /path/to/state         with a target, only compile what changed since the last build
+ * deadline 500                       milliseconds the compile may take before it is abandoned
+ * compile                            runs the compile described by the lines before
+ * </pre>
+ *
+ * The other commands are {@code stats}, {@code invalidate} (drops all warm compilers) and {@code
+ * shutdown}. The response to a compile is one {@code error} or {@code warning} line per message,
+ * {@code <file>:<line>:<column>: <text>} ({@code -} as file if unknown), and every response ends
+ * with a {@code done} line, for a compile {@code done ok <classes> <millis>} or {@code done failed
+ * <errors> <millis>}, or {@code done deadline <millis>} if it was abandoned; an incremental compile
+ * reports what it compiled on an {@code incremental} line before.
+ */
+public final class CompileDaemon {
+
+  static final int MAX_WARM_COMPILERS = 4;
+
+  private static final Logger LOG = Logger.getLogger(CompileDaemon.class.getName());
+
+  private final Map<String, WarmCompiler> compilers =
+      new LinkedHashMap<String, WarmCompiler>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WarmCompiler> eldest) {
+          if (size() <= MAX_WARM_COMPILERS) return false;
+          close(eldest.getValue());
+          return true;
+        }
+      };
+
+  private boolean shutdown;
+
+  public static void main(String[] args) throws IOException {
+    CompileDaemon daemon = new CompileDaemon();
+    if (args.length == 0) {
+      daemon.session(System.in, System.out);
+    } else if (args.length == 2 && "--socket".equals(args[0])) {
+      daemon.serve(Paths.get(args[1]));
+    } else {
+      System.err.println("usage: CompileDaemon [--socket <path>]");
+      System.exit(2);
+    }
+  }
+
+  /**
+   * Serves the connections of a Unix domain socket, one at a time, until a {@code shutdown}
+   * request. Requires Java 16 or later.
+   *
+   * @param socketPath the socket file, replaced if it exists and deleted on shutdown
+   */
+  public void serve(Path socketPath) throws IOException {
+    Files.deleteIfExists(socketPath);
+    try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(socketPath));
+      while (!shutdown) {
+        try (SocketChannel channel = server.accept()) {
+          session(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+        }
+      }
+    } finally {
+      Files.deleteIfExists(socketPath);
+      invalidate();
+    }
+  }
+
+  /**
+   * Handles the requests read from the given stream until its end or a {@code shutdown} request.
+   *
+   * @param in the requests
+   * @param out the responses, flushed after each request
+   */
+  public void session(InputStream in, OutputStream out) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    PrintWriter writer =
+        new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), false);
+    Request request = new Request();
+    String line;
+    while (!shutdown && (line = reader.readLine()) != null) {
+      int space = line.indexOf(' ');
+      String command = space < 0 ? line : line.substring(0, space);
+      String argument = space < 0 ? "" : line.substring(space + 1);
+      switch (command) {
+        case "":
+          continue;
+        case "option":
+          int equals = argument.indexOf('=');
+          if (equals < 0) {
+            writer.println("done error malformed option: " + argument);
+          } else {
+            request.options.put(argument.substring(0, equals), argument.substring(equals + 1));
+          }
+          break;
+        case "classpath":
+          request.classpath.add(argument);
+          break;
+        case "target":
+          request.targetDirectory = argument;
+          break;
+        case "incremental":
+          request.stateFile = argument;
+          break;
+        case "deadline":
+          try {
+            request.deadlineMillis = Long.parseLong(argument);
+          } catch (NumberFormatException e) {
+            writer.println("done error malformed deadline: " + argument);
+          }
+          break;
+        case "source":
+          request.sources.add(argument);
+          break;
+        case "compile":
+          compile(request, writer);
+          request = new Request();
+          break;
+        case "stats":
+          for (Map.Entry<String, WarmCompiler> entry : compilers.entrySet()) {
+            WarmCompiler compiler = entry.getValue();
+            writer.println(
+                "compiler "
+                    + compiler.getCompiles()
+                    + " compiles, "
+                    + compiler.getCachedClasses()
+                    + " cached classes: "
+                    + entry.getKey());
+          }
+          writer.println("done " + compilers.size());
+          break;
+        case "invalidate":
+          invalidate();
+          writer.println("done");
+          break;
+        case "shutdown":
+          shutdown = true;
+          writer.println("done");
+          break;
+        default:
+          writer.println("done error unknown command: " + command);
+      }
+      writer.flush();
+    }
+  }
+
+  private void compile(Request request, PrintWriter out) {
+    long start = System.nanoTime();
+    int classes = 0;
+    ErrorCollector errors = null;
+    boolean failed = false;
+    try {
+      WarmCompiler compiler = compilers.get(request.key());
+      if (compiler == null) {
+        compiler = new WarmCompiler(request.properties(), request.classpath);
+        compilers.put(request.key(), compiler);
+      }
+      CancellationToken token =
+          request.deadlineMillis > 0
+              ? new CancellationToken(request.deadlineMillis, TimeUnit.MILLISECONDS)
+              : null;
+      if (request.stateFile != null && request.targetDirectory != null) {
+        IncrementalCompiler.Result result =
+            compiler.compileIncrementally(
+                request.sources, request.targetDirectory, request.stateFile, token);
+        out.println(
+            "incremental "
+                + (result.isFullBuild() ? "full " : "")
+                + result.getCompiledSources().size()
+                + " sources in "
+                + result.getRounds()
+                + " rounds, "
+                + result.getDeletedClasses().size()
+                + " classes deleted");
+        classes = result.getWrittenClasses().size();
+      } else {
+        CompilationUnit unit = compiler.compile(request.sources, request.targetDirectory, token);
+        classes =
+            request.targetDirectory != null
+                ? unit.getClasses().size()
+                : unit.getAST().getClasses().size();
+        errors = unit.getErrorCollector();
+      }
+    } catch (MultipleCompilationErrorsException e) {
+      errors = e.getErrorCollector();
+    } catch (CompilationCancelledException e) {
+      out.println("done deadline " + (System.nanoTime() - start) / 1_000_000);
+      return;
+    } catch (IOException | RuntimeException e) {
+      failed = true;
+      out.println("error " + oneLine(e.toString()));
+    }
+
+    int errorCount = errors != null ? errors.getErrorCount() : failed ? 1 : 0;
+    if (errors != null) {
+      if (errors.hasWarnings()) {
+        for (WarningMessage warning : errors.getWarnings()) {
+          out.println("warning " + oneLine(describe(warning)));
+        }
+      }
+      if (errors.hasErrors()) {
+        for (Message message : errors.getErrors()) {
+          out.println("error " + oneLine(describe(message)));
+        }
+      }
+    }
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    if (errorCount == 0) {
+      out.println("done ok " + classes + " " + millis);
+    } else {
+      out.println("done failed " + errorCount + " " + millis);
+    }
+  }
+
+  private static String describe(Message message) {
+    if (message instanceof MoreErrorsMessage) {
+      SyntaxException cause = ((MoreErrorsMessage) message).getCause();
+      return location(cause.getSourceLocator(), cause.getLine(), cause.getStartColumn())
+          + ((MoreErrorsMessage) message).getMessage();
+    }
+    if (message instanceof SyntaxErrorMessage) {
+      SyntaxException cause = ((SyntaxErrorMessage) message).getCause();
+      int followOns = ((SyntaxErrorMessage) message).getFollowOnCount();
+      return location(cause.getSourceLocator(), cause.getLine(), cause.getStartColumn())
+          + cause.getOriginalMessage()
+          + (followOns > 0 ? " (" + followOns + " follow-on errors)" : "");
+    }
+    if (message instanceof LocatedMessage) {
+      CSTNode context = ((LocatedMessage) message).getContext();
+      if (context != null) {
+        return location("-", context.getStartLine(), context.getStartColumn())
+            + ((LocatedMessage) message).getMessage();
+      }
+    }
+    if (message instanceof SimpleMessage) {
+      return ((SimpleMessage) message).getMessage();
+    }
+    if (message instanceof ExceptionMessage) {
+      return String.valueOf(((ExceptionMessage) message).getCause());
+    }
+    return message.toString();
+  }
+
+  /** Keeps a message on its response line. */
+  private static String oneLine(String message) {
+    return message.trim().replaceAll("\\s*\\R\\s*", " ");
+  }
+
+  private static String location(String source, int line, int column) {
+    return source + ":" + line + ":" + column + ": ";
+  }
+
+  private void invalidate() {
+    compilers.values().forEach(CompileDaemon::close);
+    compilers.clear();
+  }
+
+  private static void close(WarmCompiler compiler) {
+    try {
+      compiler.close();
+    } catch (IOException e) {
+      if (LOG.isLoggable(Level.FINE)) LOG.fine("Failed to close warm compiler: " + e);
+    }
+  }
+
+  /** The lines of a compile request read so far. */
+  private static final class Request {
+    final Map<String, String> options = new TreeMap<>();
+    final List<String> classpath = new ArrayList<>();
+    final List<String> sources = new ArrayList<>();
+    String targetDirectory;
+    String stateFile;
+    long deadlineMillis;
+
+    Properties properties() {
+      Properties properties = new Properties();
+      properties.putAll(options);
+      return properties;
+    }
+
+    /**
+     * Returns the key of the warm compiler, which includes the size and modification time of the
+     * classpath files so that a rebuilt library gets a fresh compiler.
+     */
+    String key() {
+      StringBuilder key = new StringBuilder(options.toString());
+      for (String entry : classpath) {
+        File file = new File(entry);
+        key.append(File.pathSeparatorChar).append(entry);
+        if (file.isFile())
+          key.append('@').append(file.length()).append('/').append(file.lastModified());
+      }
+      return key.toString();
+    }
+  }
+}
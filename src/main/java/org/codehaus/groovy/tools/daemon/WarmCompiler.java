@@ -0,0 +1,198 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.tools.daemon;
+
+import groovy.lang.GroovyClassLoader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.control.AnalysisCompilationUnit;
+import org.codehaus.groovy.control.CancellationToken;
+import org.codehaus.groovy.control.ClassNodeResolver;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.ParallelCompilationUnit;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SharedClassNodeResolver;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.codehaus.groovy.tools.incremental.IncrementalCompiler;
+
+/**
+ * Compiler state kept warm between the requests of a {@link CompileDaemon} that share the same
+ * options and classpath: the configuration, the class loader holding the classpath and the global
+ * AST transformations loaded from it, and the class nodes resolved from the classpath. The
+ * configuration is never handed out, so it stays as configured for the lifetime of the state.
+ */
+final class WarmCompiler implements AutoCloseable {
+
+  private final CompilerConfiguration configuration;
+  private final GroovyClassLoader loader;
+  private final SharedClassNodeResolver resolver;
+  private int compiles;
+
+  WarmCompiler(Properties options, List<String> classpath) {
+    configuration = new CompilerConfiguration(options);
+    configuration.setClasspathList(classpath);
+    loader = new GroovyClassLoader(WarmCompiler.class.getClassLoader(), configuration);
+    resolver = new SharedClassNodeResolver(configuration, loader);
+  }
+
+  /**
+   * Compiles the given sources.
+   *
+   * @param sources the source files
+   * @param targetDirectory the directory to write the classes to, or {@code null} to only analyze
+   *     the sources, see {@link AnalysisCompilationUnit}
+   * @param token the token cancelling the compile, or {@code null}
+   * @return the compilation unit, whose error collector holds the messages
+   * @throws CompilationFailedException if the sources have errors or the compile is cancelled
+   */
+  CompilationUnit compile(List<String> sources, String targetDirectory, CancellationToken token)
+      throws CompilationFailedException {
+    compiles += 1;
+    CompilerConfiguration configuration = this.configuration;
+    if (targetDirectory != null || token != null) {
+      configuration = new CompilerConfiguration(configuration);
+      configuration.setTargetDirectory(targetDirectory);
+      configuration.setCancellationToken(token);
+    }
+    CompilationUnit unit;
+    if (targetDirectory != null) {
+      unit = new ParallelCompilationUnit(configuration, null, loader);
+    } else {
+      unit = new AnalysisCompilationUnit(configuration, null, loader);
+    }
+    unit.setClassNodeResolver(resolver);
+    for (String source : sources) {
+      unit.addSource(new File(source));
+    }
+    try {
+      unit.compile(Phases.OUTPUT);
+    } finally {
+      // the classes just compiled may have been cached as missing, or with an outdated
+      // definition if the target directory is on the classpath
+      for (ClassNode classNode : unit.getAST().getClasses()) {
+        resolver.forget(classNode.getName());
+      }
+      for (GroovyClass generated : unit.getClasses()) {
+        resolver.forget(generated.getName());
+      }
+    }
+    return unit;
+  }
+
+  /**
+   * Compiles the given sources incrementally, see {@link IncrementalCompiler}.
+   *
+   * @param sources all source files of the build
+   * @param targetDirectory the directory to write the classes to
+   * @param stateFile the state of the previous build
+   * @param token the token cancelling the compile, or {@code null}
+   * @return what was compiled
+   * @throws CompilationFailedException if the sources have errors or the compile is cancelled
+   * @throws IOException if a source cannot be read or the state cannot be saved
+   */
+  IncrementalCompiler.Result compileIncrementally(
+      List<String> sources, String targetDirectory, String stateFile, CancellationToken token)
+      throws CompilationFailedException, IOException {
+    CompilerConfiguration configuration = new CompilerConfiguration(this.configuration);
+    configuration.setTargetDirectory(targetDirectory);
+    configuration.setCancellationToken(token);
+    List<File> files = new ArrayList<>(sources.size());
+    for (String source : sources) {
+      files.add(new File(source));
+    }
+
+    List<GroovyClassLoader> roundLoaders = new ArrayList<>();
+    ClassNodeResolver roundResolver =
+        new IncrementalClassNodeResolver(resolver, new File(targetDirectory));
+    IncrementalCompiler compiler =
+        new IncrementalCompiler(configuration, new File(stateFile)) {
+          @Override
+          protected CompilationUnit createCompilationUnit(CompilerConfiguration configuration) {
+            compiles += 1;
+            // the target directory changes between rounds, so it gets a loader of its own
+            GroovyClassLoader roundLoader = new GroovyClassLoader(loader);
+            roundLoaders.add(roundLoader);
+            roundLoader.addClasspath(targetDirectory);
+            CompilationUnit unit = new ParallelCompilationUnit(configuration, null, roundLoader);
+            unit.setClassNodeResolver(roundResolver);
+            return unit;
+          }
+        };
+    IncrementalCompiler.Result result;
+    try {
+      result = compiler.compile(files);
+    } catch (CompilationFailedException | IOException e) {
+      // earlier rounds may have rewritten classes already
+      resolver.clear();
+      throw e;
+    } finally {
+      for (GroovyClassLoader roundLoader : roundLoaders) {
+        roundLoader.close();
+      }
+    }
+    result.getWrittenClasses().forEach(resolver::forget);
+    result.getDeletedClasses().forEach(resolver::forget);
+    return result;
+  }
+
+  /** Returns the number of compiles run on this state. */
+  int getCompiles() {
+    return compiles;
+  }
+
+  /** Returns the number of class nodes, including known missing classes, cached so far. */
+  int getCachedClasses() {
+    return resolver.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    loader.close();
+  }
+
+  /**
+   * Shares the class nodes of the classpath between the rounds of incremental compiles, but not
+   * those of the target directory: they resolve their members lazily through the loader of their
+   * round, closed once the compile is done, and the next rounds may rewrite them anyway. Classes of
+   * the classpath referring to classes of the target directory do not see them.
+   */
+  private static final class IncrementalClassNodeResolver extends ClassNodeResolver {
+    private final SharedClassNodeResolver shared;
+    private final File targetDirectory;
+
+    IncrementalClassNodeResolver(SharedClassNodeResolver shared, File targetDirectory) {
+      this.shared = shared;
+      this.targetDirectory = targetDirectory;
+    }
+
+    @Override
+    public LookupResult resolveName(String name, CompilationUnit unit) {
+      if (new File(targetDirectory, name.replace('.', '/') + ".class").isFile()) {
+        return findClassNode(name, unit);
+      }
+      return shared.resolveName(name, unit);
+    }
+  }
+}
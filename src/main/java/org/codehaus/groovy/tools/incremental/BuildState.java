@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.tools.incremental;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * What the last incremental build compiled: the fingerprint of each source and the classes it
+ * produced, and the ABI and references of each class, as read from and written to the state file of
+ * an {@link IncrementalCompiler}.
+ *
+ * <p>The file is a {@link java.io.DataOutput} stream: the magic number, the format version, the
+ * configuration key, the number of sources and, for each source, its path, length, modification
+ * time, content digest and the names of its classes; then the number of classes and, for each
+ * class, its name, ABI hash and the names of the build's classes it references.
+ */
+final class BuildState {
+
+  private static final int MAGIC = 0x47494253;
+
+  private static final int VERSION = 1;
+
+  /** The configuration the classes were compiled with, a change requires a full build. */
+  String configurationKey = "";
+
+  final Map<String, Source> sources = new TreeMap<>();
+
+  final Map<String, ClassAbi> classes = new HashMap<>();
+
+  /** Returns the names of the sources which reference any of the given classes. */
+  Set<String> findDependents(Set<String> classNames) {
+    Set<String> dependents = new HashSet<>();
+    for (Map.Entry<String, Source> entry : sources.entrySet()) {
+      for (String className : entry.getValue().classes) {
+        ClassAbi abi = classes.get(className);
+        if (abi != null && !Collections.disjoint(abi.getReferences(), classNames)) {
+          dependents.add(entry.getKey());
+          break;
+        }
+      }
+    }
+    return dependents;
+  }
+
+  /**
+   * Reads a state file.
+   *
+   * @return the state, empty if the file does not exist or cannot be read
+   */
+  static BuildState load(File file) {
+    BuildState state = new BuildState();
+    if (!file.isFile()) return state;
+
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) {
+        throw new IOException("unrecognized format");
+      }
+      state.configurationKey = in.readUTF();
+      for (int i = in.readInt(); i > 0; i--) {
+        String path = in.readUTF();
+        Source source = new Source(in.readLong(), in.readLong(), readBytes(in));
+        for (int j = in.readInt(); j > 0; j--) {
+          source.classes.add(in.readUTF());
+        }
+        state.sources.put(path, source);
+      }
+      for (int i = in.readInt(); i > 0; i--) {
+        String name = in.readUTF();
+        byte[] hash = readBytes(in);
+        Set<String> references = new HashSet<>();
+        for (int j = in.readInt(); j > 0; j--) {
+          references.add(in.readUTF());
+        }
+        state.classes.put(name, new ClassAbi(name, hash, references));
+      }
+      return state;
+    } catch (IOException e) {
+      Logger log = Logger.getLogger(BuildState.class.getName());
+      if (log.isLoggable(Level.FINE)) {
+        log.fine("Ignoring unreadable incremental build state `" + file + "`: " + e);
+      }
+      return new BuildState();
+    }
+  }
+
+  /** Writes the state file, replacing the previous one atomically where the platform allows. */
+  void save(File file) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null) Files.createDirectories(parent.toPath());
+    File temp = new File(parent, file.getName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+      out.writeUTF(configurationKey);
+      out.writeInt(sources.size());
+      for (Map.Entry<String, Source> entry : sources.entrySet()) {
+        Source source = entry.getValue();
+        out.writeUTF(entry.getKey());
+        out.writeLong(source.length);
+        out.writeLong(source.lastModified);
+        writeBytes(out, source.digest);
+        out.writeInt(source.classes.size());
+        for (String className : source.classes) {
+          out.writeUTF(className);
+        }
+      }
+      out.writeInt(classes.size());
+      for (ClassAbi abi : classes.values()) {
+        // only references between the classes of the build are needed to find dependents
+        List<String> references = new ArrayList<>(abi.getReferences());
+        references.retainAll(classes.keySet());
+        out.writeUTF(abi.getName());
+        writeBytes(out, abi.getHash());
+        out.writeInt(references.size());
+        for (String reference : references) {
+          out.writeUTF(reference);
+        }
+      }
+    }
+    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readUnsignedShort()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  /** A compiled source file. */
+  static final class Source {
+    final long length;
+    final long lastModified;
+    final byte[] digest;
+    final List<String> classes = new ArrayList<>();
+
+    Source(long length, long lastModified, byte[] digest) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.digest = digest;
+    }
+  }
+}
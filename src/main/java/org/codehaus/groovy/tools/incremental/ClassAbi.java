@@ -0,0 +1,298 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.tools.incremental;
+
+import groovyjarjarasm.asm.AnnotationVisitor;
+import groovyjarjarasm.asm.ClassReader;
+import groovyjarjarasm.asm.ClassVisitor;
+import groovyjarjarasm.asm.FieldVisitor;
+import groovyjarjarasm.asm.MethodVisitor;
+import groovyjarjarasm.asm.Opcodes;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.codehaus.groovy.control.CompilerConfiguration;
+
+/**
+ * The application binary interface of a compiled class, as far as other classes can depend on it,
+ * and the classes it references. Both are read from the class file: the ABI hash covers the class
+ * header and the signatures of the non-private, non-synthetic members (plus the values of constant
+ * fields), and the annotations of both with their values, including the defaults of annotation
+ * members, independent of member order; method bodies and private members do not contribute. The
+ * references are the classes named in the constant pool.
+ */
+final class ClassAbi {
+
+  private static final Pattern DESCRIPTOR_TYPE = Pattern.compile("L([^;<>:()\\[]+)[;<]");
+
+  private final String name;
+  private final byte[] hash;
+  private final Set<String> references;
+
+  ClassAbi(String name, byte[] hash, Set<String> references) {
+    this.name = name;
+    this.hash = hash;
+    this.references = references;
+  }
+
+  /**
+   * Reads the ABI of a class file.
+   *
+   * @param bytes the class file
+   * @return the ABI, with class names in binary form, e.g. {@code foo.Bar$Baz}
+   */
+  static ClassAbi read(byte[] bytes) {
+    ClassReader reader = new ClassReader(bytes);
+    String name = reader.getClassName().replace('/', '.');
+
+    Set<String> references = new HashSet<>();
+    char[] buffer = new char[reader.getMaxStringLength()];
+    for (int i = 1; i < reader.getItemCount(); i++) {
+      int offset = reader.getItem(i);
+      if (offset == 0) continue; // second slot of a long or double
+      int tag = reader.readByte(offset - 1);
+      if (tag == 7) { // CONSTANT_Class
+        String type = reader.readUTF8(offset, buffer);
+        if (type.startsWith("[")) {
+          addDescriptorTypes(type, references);
+        } else {
+          references.add(type.replace('/', '.'));
+        }
+      } else if (tag == 1) { // CONSTANT_Utf8: descriptors and signatures
+        // modified UTF-8, which only differs from UTF-8 in characters not part of class names; the
+        // reader was created on the whole array, so its offsets are those of the array
+        String utf8 =
+            new String(bytes, offset + 2, reader.readUnsignedShort(offset), StandardCharsets.UTF_8);
+        if (utf8.indexOf(';') > 0) addDescriptorTypes(utf8, references);
+      }
+    }
+    references.remove(name);
+
+    Signatures signatures = new Signatures();
+    reader.accept(signatures, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG);
+    return new ClassAbi(name, signatures.hash(), Collections.unmodifiableSet(references));
+  }
+
+  private static void addDescriptorTypes(String descriptor, Set<String> references) {
+    Matcher matcher = DESCRIPTOR_TYPE.matcher(descriptor);
+    while (matcher.find()) {
+      references.add(matcher.group(1).replace('/', '.'));
+    }
+  }
+
+  String getName() {
+    return name;
+  }
+
+  byte[] getHash() {
+    return hash;
+  }
+
+  /** Returns the names of the other classes referenced by this class. */
+  Set<String> getReferences() {
+    return references;
+  }
+
+  boolean isCompatible(ClassAbi other) {
+    return other != null && Arrays.equals(hash, other.hash);
+  }
+
+  /** Collects the signature lines of the ABI. */
+  private static final class Signatures extends ClassVisitor {
+    private final List<String> header = new ArrayList<>();
+    private final List<String> members = new ArrayList<>();
+
+    Signatures() {
+      super(CompilerConfiguration.ASM_API_VERSION);
+    }
+
+    @Override
+    public void visit(
+        int version,
+        int access,
+        String name,
+        String signature,
+        String superName,
+        String[] interfaces) {
+      header.add(
+          "class "
+              + (access & ~Opcodes.ACC_SUPER)
+              + " "
+              + name
+              + " "
+              + signature
+              + " "
+              + superName
+              + " "
+              + Arrays.toString(interfaces));
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+      return new AnnotationValues(header::add, "annotation " + descriptor + " " + visible, false);
+    }
+
+    @Override
+    public void visitPermittedSubclass(String permittedSubclass) {
+      header.add("permits " + permittedSubclass);
+    }
+
+    @Override
+    public FieldVisitor visitField(
+        int access, String name, String descriptor, String signature, Object value) {
+      if (!isApi(access)) return null;
+      members.add(
+          "field " + access + " " + name + " " + descriptor + " " + signature + " " + value);
+      String member = "field " + name + " ";
+      return new FieldVisitor(api) {
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+          return new AnnotationValues(
+              members::add, member + "annotation " + descriptor + " " + visible, false);
+        }
+      };
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        int access, String name, String descriptor, String signature, String[] exceptions) {
+      if (!isApi(access)) return null;
+      members.add(
+          "method "
+              + access
+              + " "
+              + name
+              + descriptor
+              + " "
+              + signature
+              + " "
+              + Arrays.toString(exceptions));
+      String member = "method " + name + descriptor + " ";
+      return new MethodVisitor(api) {
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+          return new AnnotationValues(
+              members::add, member + "annotation " + descriptor + " " + visible, false);
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation(
+            int parameter, String descriptor, boolean visible) {
+          return new AnnotationValues(
+              members::add,
+              member + "parameter " + parameter + " annotation " + descriptor + " " + visible,
+              false);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotationDefault() {
+          return new AnnotationValues(members::add, member + "default", false);
+        }
+      };
+    }
+
+    private static boolean isApi(int access) {
+      return (access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) == 0;
+    }
+
+    byte[] hash() {
+      Collections.sort(header);
+      Collections.sort(members);
+      try {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (String line : header) digest.update((line + '\n').getBytes(StandardCharsets.UTF_8));
+        for (String line : members) digest.update((line + '\n').getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e); // every platform supports SHA-256
+      }
+    }
+  }
+
+  /**
+   * Renders the values of an annotation, or of an array value, into the line of its target once it
+   * is visited. The elements of an annotation are sorted by name, those of an array keep their
+   * order.
+   */
+  private static final class AnnotationValues extends AnnotationVisitor {
+    private final Consumer<String> target;
+    private final String prefix;
+    private final boolean array;
+    private final List<String> elements = new ArrayList<>();
+
+    AnnotationValues(Consumer<String> target, String prefix, boolean array) {
+      super(CompilerConfiguration.ASM_API_VERSION);
+      this.target = target;
+      this.prefix = prefix;
+      this.array = array;
+    }
+
+    private void add(String name, String value) {
+      elements.add(array ? value : name + "=" + value);
+    }
+
+    @Override
+    public void visit(String name, Object value) {
+      add(name, render(value));
+    }
+
+    @Override
+    public void visitEnum(String name, String descriptor, String value) {
+      add(name, descriptor + "." + value);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+      return new AnnotationValues(value -> add(name, value), "@" + descriptor, false);
+    }
+
+    @Override
+    public AnnotationVisitor visitArray(String name) {
+      return new AnnotationValues(value -> add(name, value), "", true);
+    }
+
+    @Override
+    public void visitEnd() {
+      if (!array) Collections.sort(elements);
+      String values = String.join(", ", elements);
+      target.accept(prefix + (array ? "[" + values + "]" : "(" + values + ")"));
+    }
+
+    /** Renders a value, strings quoted and primitive arrays element by element. */
+    private static String render(Object value) {
+      if (value instanceof String) return '"' + (String) value + '"';
+      if (value == null || !value.getClass().isArray()) return String.valueOf(value);
+      List<String> elements = new ArrayList<>();
+      for (int i = 0; i < Array.getLength(value); i++) {
+        elements.add(String.valueOf(Array.get(value, i)));
+      }
+      return elements.toString();
+    }
+  }
+}
@@ -0,0 +1,344 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.tools.incremental;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.ParallelCompilationUnit;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.tools.GroovyClass;
+
+/**
+ * Compiles a set of sources into the target directory of a configuration, recompiling only what
+ * changed since the previous build recorded in the state file. A build compiles the new and changed
+ * sources first; every class whose {@link ClassAbi ABI} then differs from the previous build, or
+ * which no longer exists, makes the sources referencing it compile in a further round, until no ABI
+ * changes. The classes of removed sources are deleted. A change of the configuration or the
+ * classpath, or a missing or unreadable state file, results in a full build.
+ *
+ * <p>Sources that fail to compile are left out of the saved state, so the next build compiles them
+ * again.
+ */
+public class IncrementalCompiler {
+
+  /** Rounds of dependent compiles after which everything is compiled at once instead. */
+  static final int MAX_ROUNDS = 8;
+
+  private final CompilerConfiguration configuration;
+  private final File targetDirectory;
+  private final File stateFile;
+
+  /**
+   * @param configuration the configuration, which must have a target directory
+   * @param stateFile where the state of the last build is kept, e.g. next to the target directory
+   */
+  public IncrementalCompiler(CompilerConfiguration configuration, File stateFile) {
+    if (configuration.getTargetDirectory() == null) {
+      throw new IllegalArgumentException("incremental compilation requires a target directory");
+    }
+    this.targetDirectory = configuration.getTargetDirectory();
+    this.stateFile = stateFile;
+
+    // the classes of unchanged sources are resolved from the target directory
+    List<String> classpath = new ArrayList<>(configuration.getClasspath().size() + 1);
+    classpath.add(targetDirectory.getPath());
+    classpath.addAll(configuration.getClasspath());
+    this.configuration = new CompilerConfiguration(configuration);
+    this.configuration.setClasspathList(classpath);
+  }
+
+  /**
+   * Creates the compilation unit of a round. Subclasses may use their own class loader or class
+   * node resolver; the target directory is the first entry of the configuration's classpath.
+   */
+  protected CompilationUnit createCompilationUnit(CompilerConfiguration configuration) {
+    return new ParallelCompilationUnit(configuration);
+  }
+
+  /**
+   * Brings the target directory up to date with the given sources.
+   *
+   * @param sourceFiles all sources of the build, not just the changed ones
+   * @return what was compiled
+   * @throws CompilationFailedException if a source fails to compile
+   * @throws IOException if a source cannot be read or the state cannot be saved
+   */
+  public Result compile(Collection<File> sourceFiles)
+      throws CompilationFailedException, IOException {
+    BuildState previous = BuildState.load(stateFile);
+    BuildState state = new BuildState();
+    state.configurationKey = configurationKey();
+    boolean fullBuild = !state.configurationKey.equals(previous.configurationKey);
+
+    Map<String, File> files = new LinkedHashMap<>();
+    Set<String> dirty = new LinkedHashSet<>();
+    for (File file : sourceFiles) {
+      String path = file.getCanonicalPath();
+      files.put(path, file);
+      BuildState.Source old = fullBuild ? null : previous.sources.get(path);
+      BuildState.Source current = fingerprint(file, old);
+      state.sources.put(path, current);
+      for (String className : current.classes) {
+        ClassAbi abi = previous.classes.get(className);
+        if (abi != null) state.classes.put(className, abi);
+      }
+      if (current.classes.isEmpty() || !state.classes.keySet().containsAll(current.classes)) {
+        dirty.add(path);
+      }
+    }
+
+    // the classes of changed and removed sources are out of date, and dependents of removed
+    // classes have to compile against their absence
+    Set<String> deleted = new LinkedHashSet<>();
+    Set<String> removedClasses = new HashSet<>();
+    for (Map.Entry<String, BuildState.Source> entry : previous.sources.entrySet()) {
+      if (!files.containsKey(entry.getKey())) {
+        removedClasses.addAll(entry.getValue().classes);
+      } else if (dirty.contains(entry.getKey())) {
+        deleteClassFiles(entry.getValue().classes, deleted);
+      }
+    }
+    deleteClassFiles(removedClasses, deleted);
+    dirty.addAll(state.findDependents(removedClasses));
+
+    Set<String> compiled = new LinkedHashSet<>();
+    Set<String> written = new LinkedHashSet<>();
+    int rounds = 0;
+    while (!dirty.isEmpty()) {
+      rounds += 1;
+      if (rounds > MAX_ROUNDS) dirty = new LinkedHashSet<>(files.keySet());
+      Set<String> abiChanges = compileRound(dirty, files, previous, state, written, deleted);
+      compiled.addAll(dirty);
+      Set<String> dependents = state.findDependents(abiChanges);
+      dependents.removeAll(dirty);
+      dirty = dependents;
+    }
+
+    state.save(stateFile);
+    return new Result(fullBuild, rounds, compiled, written, deleted);
+  }
+
+  /**
+   * Compiles the given sources together.
+   *
+   * @return the names of the classes whose ABI changed, including those no longer produced
+   */
+  private Set<String> compileRound(
+      Set<String> paths,
+      Map<String, File> files,
+      BuildState previous,
+      BuildState state,
+      Set<String> written,
+      Set<String> deleted)
+      throws CompilationFailedException {
+    CompilationUnit unit = createCompilationUnit(configuration);
+    Map<SourceUnit, String> sourcePaths = new HashMap<>();
+    Set<String> oldClasses = new HashSet<>();
+    for (String path : paths) {
+      sourcePaths.put(unit.addSource(files.get(path)), path);
+      BuildState.Source source = state.sources.get(path);
+      for (String className : source.classes) {
+        oldClasses.add(className);
+        state.classes.remove(className);
+      }
+      state.sources.put(
+          path, new BuildState.Source(source.length, source.lastModified, source.digest));
+    }
+
+    try {
+      unit.compile(Phases.OUTPUT);
+    } catch (CompilationFailedException e) {
+      for (String path : paths) {
+        state.sources.remove(path);
+      }
+      try {
+        state.save(stateFile);
+      } catch (IOException ignore) {
+        // a lost state file only means a full build next time
+      }
+      throw e;
+    }
+
+    Map<String, String> classSources = new HashMap<>();
+    for (Map.Entry<SourceUnit, String> entry : sourcePaths.entrySet()) {
+      for (ClassNode classNode : entry.getKey().getAST().getClasses()) {
+        classSources.put(classNode.getName(), entry.getValue());
+      }
+    }
+
+    Set<String> abiChanges = new HashSet<>();
+    for (GroovyClass generated : unit.getClasses()) {
+      ClassAbi abi = ClassAbi.read(generated.getBytes());
+      String path = findSource(abi.getName(), classSources);
+      if (path != null) state.sources.get(path).classes.add(abi.getName());
+      if (!abi.isCompatible(previous.classes.get(abi.getName()))) abiChanges.add(abi.getName());
+      state.classes.put(abi.getName(), abi);
+      oldClasses.remove(abi.getName());
+      written.add(abi.getName());
+      deleted.remove(abi.getName());
+    }
+    deleteClassFiles(oldClasses, deleted);
+    abiChanges.addAll(oldClasses);
+    return abiChanges;
+  }
+
+  /** Finds the source of a class, looking up the enclosing classes of nested ones. */
+  private static String findSource(String className, Map<String, String> classSources) {
+    for (String name = className; ; name = name.substring(0, name.lastIndexOf('$'))) {
+      String path = classSources.get(name);
+      if (path != null || name.indexOf('$') < 0) return path;
+    }
+  }
+
+  private void deleteClassFiles(Collection<String> classNames, Set<String> deleted) {
+    for (String className : classNames) {
+      File classFile = new File(targetDirectory, className.replace('.', '/') + ".class");
+      if (classFile.delete()) deleted.add(className);
+    }
+  }
+
+  /**
+   * Returns the previous fingerprint if the file has not changed, or else a new one, which has no
+   * classes unless just the timestamp changed.
+   */
+  private static BuildState.Source fingerprint(File file, BuildState.Source old)
+      throws IOException {
+    long length = file.length();
+    long lastModified = file.lastModified();
+    if (old != null && old.length == length && old.lastModified == lastModified) return old;
+
+    byte[] digest = digest(file);
+    BuildState.Source current = new BuildState.Source(length, lastModified, digest);
+    if (old != null && Arrays.equals(old.digest, digest)) current.classes.addAll(old.classes);
+    return current;
+  }
+
+  private static byte[] digest(File file) throws IOException {
+    try (InputStream in =
+        new DigestInputStream(
+            Files.newInputStream(file.toPath()), MessageDigest.getInstance("SHA-256"))) {
+      byte[] buffer = new byte[8192];
+      while (in.read(buffer) != -1) {
+        // digest only
+      }
+      return ((DigestInputStream) in).getMessageDigest().digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every platform supports SHA-256
+    }
+  }
+
+  /** Describes everything about the configuration that the compiled classes depend on. */
+  private String configurationKey() {
+    StringBuilder key = new StringBuilder();
+    key.append(configuration.getTargetBytecode())
+        .append(' ')
+        .append(configuration.getSourceEncoding())
+        .append(' ')
+        .append(configuration.getParameters())
+        .append(' ')
+        .append(configuration.isPreviewFeatures())
+        .append(' ')
+        .append(configuration.getScriptBaseClass())
+        .append(' ')
+        .append(new TreeMap<>(configuration.getOptimizationOptions()))
+        .append(' ')
+        .append(configuration.getDisabledGlobalASTTransformations());
+    for (CompilationCustomizer customizer : configuration.getCompilationCustomizers()) {
+      key.append(' ').append(customizer.getClass().getName());
+    }
+    for (String entry :
+        configuration.getClasspath().subList(1, configuration.getClasspath().size())) {
+      File file = new File(entry);
+      key.append(File.pathSeparatorChar).append(entry);
+      if (file.isFile())
+        key.append('@').append(file.length()).append('/').append(file.lastModified());
+    }
+    return key.toString();
+  }
+
+  /** The outcome of an incremental build. */
+  public static final class Result {
+    private final boolean fullBuild;
+    private final int rounds;
+    private final Set<String> compiledSources;
+    private final Set<String> writtenClasses;
+    private final Set<String> deletedClasses;
+
+    Result(
+        boolean fullBuild,
+        int rounds,
+        Set<String> compiledSources,
+        Set<String> writtenClasses,
+        Set<String> deletedClasses) {
+      this.fullBuild = fullBuild;
+      this.rounds = rounds;
+      this.compiledSources = Collections.unmodifiableSet(compiledSources);
+      this.writtenClasses = Collections.unmodifiableSet(writtenClasses);
+      this.deletedClasses = Collections.unmodifiableSet(deletedClasses);
+    }
+
+    /** Returns {@code true} if there was no usable state of a previous build. */
+    public boolean isFullBuild() {
+      return fullBuild;
+    }
+
+    /** Returns the number of compile rounds, {@code 0} if nothing changed. */
+    public int getRounds() {
+      return rounds;
+    }
+
+    /** Returns the canonical paths of the compiled sources. */
+    public Set<String> getCompiledSources() {
+      return compiledSources;
+    }
+
+    /** Returns the names of the classes written to the target directory. */
+    public Set<String> getWrittenClasses() {
+      return writtenClasses;
+    }
+
+    /** Returns the names of the classes deleted from the target directory. */
+    public Set<String> getDeletedClasses() {
+      return deletedClasses;
+    }
+  }
+}
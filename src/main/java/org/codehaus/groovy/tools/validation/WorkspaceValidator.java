@@ -0,0 +1,705 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.tools.validation;
+
+import groovy.lang.GroovyClassLoader;
+import groovyjarjarantlr4.v4.runtime.CharStreams;
+import groovyjarjarantlr4.v4.runtime.Token;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.groovy.parser.antlr4.GroovyLangLexer;
+import org.apache.groovy.parser.antlr4.GroovyLexer;
+import org.codehaus.groovy.GroovyBugError;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.ImportNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.AnalysisCompilationUnit;
+import org.codehaus.groovy.control.CancellationToken;
+import org.codehaus.groovy.control.ClassNodeResolver;
+import org.codehaus.groovy.control.CompilationCancelledException;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.ParallelCompilationUnit;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SharedClassNodeResolver;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.messages.ExceptionMessage;
+import org.codehaus.groovy.control.messages.Message;
+import org.codehaus.groovy.control.messages.SimpleMessage;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.control.messages.WarningMessage;
+import org.codehaus.groovy.tools.GroovyClass;
+
+/**
+ * Validates many sources at once, for example a whole project in an IDE. The sources are analyzed
+ * on a pool of {@link CompilerConfiguration#getCompileThreads()} threads, and the result of each
+ * one is handed over as soon as it is done. All units share the configuration, the class loader of
+ * the classpath and the class nodes resolved from it, so the classpath is read once per validator
+ * rather than once per source.
+ *
+ * <p>The sources are first parsed in parallel, to find the classes they declare and the classes of
+ * the other sources they may refer to. They are then analyzed in dependency order, each by an
+ * {@link AnalysisCompilationUnit} of its own, or together with the sources it forms a cycle with.
+ * A source that others depend on is compiled to classes instead, which its dependents resolve like
+ * classes of the classpath, so every source is analyzed once. A source that refers to a class of a
+ * source with errors, or of one which does not parse, is not validated; its result has an error
+ * naming that dependency instead of errors which may only follow from it.
+ *
+ * <p>The configuration is copied on construction and never handed out, so it stays frozen while
+ * sources are validated.
+ */
+public final class WorkspaceValidator implements AutoCloseable {
+
+  private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+  private static final Pattern PACKAGE =
+      Pattern.compile("^\\s*package\\s+([\\w.]+)", Pattern.MULTILINE);
+
+  private final CompilerConfiguration configuration;
+  private final GroovyClassLoader loader;
+  private final SharedClassNodeResolver resolver;
+  private final ExecutorService pool;
+
+  /**
+   * Creates a validator for the given configuration.
+   *
+   * @param configuration the configuration, including the classpath and the number of threads
+   */
+  public WorkspaceValidator(CompilerConfiguration configuration) {
+    this.configuration = new CompilerConfiguration(configuration);
+    loader = new GroovyClassLoader(WorkspaceValidator.class.getClassLoader(), this.configuration);
+    resolver = new SharedClassNodeResolver(this.configuration, loader);
+    int threads = configuration.getCompileThreads();
+    String prefix = "groovy-validate-" + POOL_NUMBER.incrementAndGet() + "-";
+    AtomicInteger threadNumber = new AtomicInteger();
+    pool =
+        Executors.newFixedThreadPool(
+            threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+            runnable -> {
+              Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Validates the given sources in parallel. The listener is called once per source as soon as it
+   * has been analyzed, from one thread at a time, in the order the sources finish.
+   *
+   * <p>If the {@link CancellationToken} of the configuration is cancelled, the sources not analyzed
+   * yet are skipped and the returned future fails with a {@link CompilationCancelledException}.
+   *
+   * @param sources the source files
+   * @param listener receives the result of each source
+   * @return the future completed once all sources have been validated
+   */
+  public CompletableFuture<Void> validate(
+      Collection<File> sources, Consumer<? super Result> listener) {
+    Object listenerLock = new Object();
+    Consumer<Result> results =
+        result -> {
+          synchronized (listenerLock) {
+            listener.accept(result);
+          }
+        };
+    List<CompletableFuture<Source>> parsed = new ArrayList<>(sources.size());
+    for (File file : sources) {
+      parsed.add(CompletableFuture.supplyAsync(() -> parse(file), pool));
+    }
+    CompletableFuture<Void> validated =
+        CompletableFuture.allOf(parsed.toArray(new CompletableFuture<?>[0]))
+            .thenCompose(
+                allParsed -> {
+                  List<Source> parsedSources = new ArrayList<>(parsed.size());
+                  for (CompletableFuture<Source> source : parsed) {
+                    parsedSources.add(source.join());
+                  }
+                  return analyze(parsedSources, results);
+                });
+
+    // the stages fail with a CompletionException around the cancellation
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    validated.whenComplete(
+        (ignored, failure) -> {
+          if (failure == null) {
+            done.complete(null);
+          } else if (failure instanceof CompletionException && failure.getCause() != null) {
+            done.completeExceptionally(failure.getCause());
+          } else {
+            done.completeExceptionally(failure);
+          }
+        });
+    return done;
+  }
+
+  /**
+   * Parses the given source, and records the classes it declares and the names it uses. A source
+   * which does not parse is assumed to declare the class named after the file.
+   */
+  private Source parse(File file) {
+    checkCancelled();
+    CompilationUnit unit = new CompilationUnit(configuration, null, loader);
+    SourceUnit source = unit.addSource(file);
+    ErrorCollector collector = unit.getErrorCollector();
+    List<Message> errors = new ArrayList<>();
+    try {
+      unit.compile(Phases.CONVERSION);
+    } catch (CompilationCancelledException e) {
+      throw e;
+    } catch (CompilationFailedException e) {
+      // the messages are in the collector
+    } catch (RuntimeException e) {
+      errors.add(new ExceptionMessage(e, configuration.getDebug(), source));
+    } catch (GroovyBugError e) {
+      errors.add(new SimpleMessage(String.valueOf(e), source));
+    }
+    if (collector.hasErrors()) errors.addAll(0, collector.getErrors());
+    List<WarningMessage> warnings =
+        collector.hasWarnings() ? collector.getWarnings() : Collections.emptyList();
+
+    String text = read(source);
+    if (!errors.isEmpty()) {
+      Matcher packageName = PACKAGE.matcher(text != null ? text : "");
+      String simpleName = file.getName().replaceFirst("\\.[^.]*$", "");
+      String className = packageName.find() ? packageName.group(1) + "." + simpleName : simpleName;
+      return new Source(
+          file,
+          Collections.singletonList(className),
+          Collections.emptySet(),
+          Collections.emptySet(),
+          Collections.emptySet(),
+          "",
+          errors,
+          warnings);
+    }
+
+    ModuleNode module = source.getAST();
+    List<String> classNames = new ArrayList<>();
+    for (ClassNode declared : module.getClasses()) {
+      classNames.add(declared.getName());
+    }
+    Set<String> imports = new HashSet<>();
+    for (ImportNode imported : module.getImports()) {
+      imports.add(imported.getClassName());
+    }
+    for (ImportNode imported : module.getStaticImports().values()) {
+      imports.add(imported.getClassName());
+    }
+    for (ImportNode imported : module.getStaticStarImports().values()) {
+      imports.add(imported.getClassName());
+    }
+    Set<String> starImports = new HashSet<>();
+    for (ImportNode imported : module.getStarImports()) {
+      starImports.add(withoutTrailingDot(imported.getPackageName()));
+    }
+    Set<String> identifiers = new HashSet<>();
+    if (text != null) {
+      GroovyLangLexer lexer = new GroovyLangLexer(CharStreams.fromString(text));
+      for (Token token : lexer.getAllTokens()) {
+        if (token.getType() == GroovyLexer.Identifier
+            || token.getType() == GroovyLexer.CapitalizedIdentifier) {
+          identifiers.add(token.getText());
+        }
+      }
+    }
+    return new Source(
+        file,
+        classNames,
+        identifiers,
+        imports,
+        starImports,
+        withoutTrailingDot(module.getPackageName()),
+        null,
+        warnings);
+  }
+
+  private static String read(SourceUnit source) {
+    try (Reader reader = source.getSource().getReader()) {
+      StringBuilder text = new StringBuilder();
+      char[] buffer = new char[8192];
+      for (int read; (read = reader.read(buffer)) != -1; ) {
+        text.append(buffer, 0, read);
+      }
+      return text.toString();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static String withoutTrailingDot(String packageName) {
+    if (packageName == null) return "";
+    return packageName.endsWith(".")
+        ? packageName.substring(0, packageName.length() - 1)
+        : packageName;
+  }
+
+  /** Analyzes the parsed sources, each group of sources once the groups it depends on are done. */
+  private CompletableFuture<Void> analyze(List<Source> sources, Consumer<Result> results) {
+    Workspace workspace = new Workspace(new WorkspaceLoader(loader, configuration));
+    for (Source source : sources) {
+      for (String className : source.classNames) {
+        workspace.declared.putIfAbsent(className, source);
+      }
+    }
+    for (Source source : sources) {
+      if (source.errors != null) {
+        results.accept(new Result(source.file, source.errors, source.warnings));
+      } else {
+        source.dependencies.addAll(workspace.dependencies(source));
+      }
+    }
+
+    List<Component> components = components(sources);
+    List<CompletableFuture<Void>> futures = new ArrayList<>(components.size());
+    for (Component component : components) {
+      List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+      for (Component dependency : component.dependencies) {
+        dependencies.add(dependency.analyzed);
+      }
+      component.analyzed =
+          CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+              .thenRunAsync(() -> analyze(component, workspace, results), pool);
+      futures.add(component.analyzed);
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Groups the sources which parsed into the strongly connected components of their dependencies,
+   * with Tarjan's algorithm, which finds the components the others depend on first.
+   */
+  private static List<Component> components(List<Source> sources) {
+    List<Component> components = new ArrayList<>();
+    Deque<Source> stack = new ArrayDeque<>();
+    Deque<Source> path = new ArrayDeque<>();
+    Deque<Iterator<Source>> edges = new ArrayDeque<>();
+    int index = 0;
+    for (Source root : sources) {
+      if (root.errors != null || root.index >= 0) continue;
+      root.index = root.lowLink = index++;
+      stack.push(root);
+      root.onStack = true;
+      path.push(root);
+      edges.push(root.dependencies.iterator());
+      while (!path.isEmpty()) {
+        Source source = path.peek();
+        Iterator<Source> dependencies = edges.peek();
+        if (dependencies.hasNext()) {
+          Source dependency = dependencies.next();
+          if (dependency.errors != null) continue;
+          if (dependency.index < 0) {
+            dependency.index = dependency.lowLink = index++;
+            stack.push(dependency);
+            dependency.onStack = true;
+            path.push(dependency);
+            edges.push(dependency.dependencies.iterator());
+          } else if (dependency.onStack) {
+            source.lowLink = Math.min(source.lowLink, dependency.index);
+          }
+          continue;
+        }
+        path.pop();
+        edges.pop();
+        if (!path.isEmpty()) path.peek().lowLink = Math.min(path.peek().lowLink, source.lowLink);
+        if (source.lowLink == source.index) {
+          Component component = new Component();
+          Source member;
+          do {
+            member = stack.pop();
+            member.onStack = false;
+            member.component = component;
+            component.members.add(member);
+          } while (member != source);
+          components.add(component);
+        }
+      }
+    }
+    for (Component component : components) {
+      for (Source member : component.members) {
+        for (Source dependency : member.dependencies) {
+          Component other = dependency.component;
+          if (other != null && other != component && component.dependencies.add(other)) {
+            other.dependedOn = true;
+          }
+        }
+      }
+    }
+    return components;
+  }
+
+  private void checkCancelled() {
+    CancellationToken token = configuration.getCancellationToken();
+    if (token != null && token.isCancelled()) {
+      throw new CompilationCancelledException(0, token.isDeadlineExceeded());
+    }
+  }
+
+  /**
+   * Analyzes the sources of a component in one unit, compiled to classes if other components
+   * depend on it, and hands over their results.
+   */
+  private void analyze(Component component, Workspace workspace, Consumer<Result> results) {
+    checkCancelled();
+
+    CompilationUnit unit;
+    if (component.dependedOn) {
+      unit = new ParallelCompilationUnit(configuration, null, workspace.loader);
+    } else {
+      unit = new AnalysisCompilationUnit(configuration, null, workspace.loader);
+    }
+    WorkspaceClassNodeResolver unitResolver = new WorkspaceClassNodeResolver(resolver, workspace);
+    unit.setClassNodeResolver(unitResolver);
+    List<SourceUnit> sources = new ArrayList<>(component.members.size());
+    Set<String> members = new HashSet<>();
+    for (Source member : component.members) {
+      SourceUnit source = unit.addSource(member.file);
+      sources.add(source);
+      members.add(source.getName());
+    }
+    SourceUnit first = sources.get(0);
+    ErrorCollector collector = unit.getErrorCollector();
+    List<Message> unlocated = new ArrayList<>();
+    try {
+      unit.compile(component.dependedOn ? Phases.CLASS_GENERATION : Phases.ALL);
+    } catch (CompilationCancelledException e) {
+      throw e;
+    } catch (CompilationFailedException e) {
+      // the messages are in the collector
+    } catch (RuntimeException e) {
+      unlocated.add(new ExceptionMessage(e, configuration.getDebug(), first));
+    } catch (GroovyBugError e) {
+      unlocated.add(new SimpleMessage(String.valueOf(e), first));
+    }
+
+    // errors of sources analyzed along, when a dependency had not been compiled to classes, are
+    // those of a dependency with errors
+    Map<String, List<Message>> located = new HashMap<>();
+    Set<String> failedDependencies = new LinkedHashSet<>(unitResolver.failedDependencies);
+    if (collector.hasErrors()) {
+      for (Message error : collector.getErrors()) {
+        if (error instanceof SyntaxErrorMessage) {
+          String locator = ((SyntaxErrorMessage) error).getCause().getSourceLocator();
+          if (members.contains(locator)) {
+            located.computeIfAbsent(locator, name -> new ArrayList<>()).add(error);
+          } else {
+            failedDependencies.add(locator);
+          }
+        } else {
+          unlocated.add(error);
+        }
+      }
+    }
+    // a dependency looked up but not needed in the end, if the unit has no errors
+    boolean failed = collector.hasErrors() || !unlocated.isEmpty();
+    if (!failed && component.dependedOn) {
+      for (GroovyClass generated : unit.getClasses()) {
+        Source declaring = workspace.declaringSource(generated.getName());
+        if (declaring != null && declaring.component == component) {
+          workspace.loader.add(generated);
+        }
+      }
+    }
+    component.failed = failed;
+    component.done = true;
+
+    List<WarningMessage> warnings =
+        collector.hasWarnings() ? collector.getWarnings() : Collections.emptyList();
+    for (int i = 0; i < sources.size(); i++) {
+      SourceUnit source = sources.get(i);
+      List<Message> errors = new ArrayList<>();
+      if (failed && !failedDependencies.isEmpty()) {
+        for (String dependency : failedDependencies) {
+          errors.add(notValidated(dependency, source));
+        }
+      } else if (failed) {
+        errors.addAll(located.getOrDefault(source.getName(), Collections.emptyList()));
+        errors.addAll(unlocated);
+        if (errors.isEmpty()) {
+          // stopped by the errors of another source of the cycle
+          for (String dependency : located.keySet()) {
+            errors.add(notValidated(dependency, source));
+          }
+        }
+      }
+      results.accept(new Result(component.members.get(i).file, errors, warnings));
+    }
+  }
+
+  private static Message notValidated(String dependency, SourceUnit source) {
+    return new SimpleMessage("not validated, its dependency " + dependency + " has errors", source);
+  }
+
+  /** Stops the threads once the pending validations are done and releases the classpath. */
+  @Override
+  public void close() throws IOException {
+    pool.shutdown();
+    loader.close();
+  }
+
+  /** A source and what its parse found. */
+  private static final class Source {
+    final File file;
+    final List<String> classNames;
+    final Set<String> identifiers;
+    final Set<String> imports;
+    final Set<String> starImports;
+    final String packageName;
+    /** The errors of the parse, or {@code null} if it parsed. */
+    final List<Message> errors;
+
+    final List<WarningMessage> warnings;
+    final Set<Source> dependencies = new LinkedHashSet<>();
+    Component component;
+    int index = -1;
+    int lowLink;
+    boolean onStack;
+
+    Source(
+        File file,
+        List<String> classNames,
+        Set<String> identifiers,
+        Set<String> imports,
+        Set<String> starImports,
+        String packageName,
+        List<Message> errors,
+        List<WarningMessage> warnings) {
+      this.file = file;
+      this.classNames = classNames;
+      this.identifiers = identifiers;
+      this.imports = imports;
+      this.starImports = starImports;
+      this.packageName = packageName;
+      this.errors = errors;
+      this.warnings = warnings;
+    }
+  }
+
+  /** Sources depending on each other, analyzed in one unit. */
+  private static final class Component {
+    final List<Source> members = new ArrayList<>();
+    final Set<Component> dependencies = new LinkedHashSet<>();
+    boolean dependedOn;
+    CompletableFuture<Void> analyzed;
+    volatile boolean failed;
+    volatile boolean done;
+  }
+
+  /** The classes declared by the sources of one validation, and those compiled so far. */
+  private static final class Workspace {
+    final Map<String, Source> declared = new HashMap<>();
+    final Map<String, List<String>> topLevelClasses = new HashMap<>();
+    final WorkspaceLoader loader;
+
+    Workspace(WorkspaceLoader loader) {
+      this.loader = loader;
+    }
+
+    /** Returns the source declaring the given class, or the class it is nested in. */
+    Source declaringSource(String className) {
+      Source declaring = declared.get(className);
+      int nested = className.indexOf('$');
+      if (declaring == null && nested > 0) declaring = declared.get(className.substring(0, nested));
+      return declaring;
+    }
+
+    /**
+     * Returns the other sources the given one may refer to: those declaring a class it imports, and
+     * those declaring a top-level class it names which is visible from its package, or named fully
+     * qualified. Finding too many only orders the analysis more than needed.
+     */
+    Set<Source> dependencies(Source source) {
+      if (topLevelClasses.isEmpty()) {
+        for (String className : declared.keySet()) {
+          if (className.indexOf('$') >= 0) continue;
+          String simpleName = className.substring(className.lastIndexOf('.') + 1);
+          topLevelClasses.computeIfAbsent(simpleName, name -> new ArrayList<>()).add(className);
+        }
+      }
+      Set<Source> dependencies = new LinkedHashSet<>();
+      for (String imported : source.imports) {
+        for (String name = imported; ; name = name.substring(0, name.lastIndexOf('.'))) {
+          Source declaring = declared.get(name);
+          if (declaring != null) {
+            dependencies.add(declaring);
+            break;
+          }
+          if (name.lastIndexOf('.') < 0) break;
+        }
+      }
+      for (String identifier : source.identifiers) {
+        for (String className : topLevelClasses.getOrDefault(identifier, Collections.emptyList())) {
+          int lastDot = className.lastIndexOf('.');
+          String packageName = lastDot < 0 ? "" : className.substring(0, lastDot);
+          int firstDot = packageName.indexOf('.');
+          String root = firstDot < 0 ? packageName : packageName.substring(0, firstDot);
+          if (packageName.isEmpty()
+              || packageName.equals(source.packageName)
+              || source.starImports.contains(packageName)
+              || source.identifiers.contains(root)) {
+            dependencies.add(declared.get(className));
+          }
+        }
+      }
+      dependencies.remove(source);
+      return dependencies;
+    }
+  }
+
+  /**
+   * Loads the classes compiled from the sources of one validation, ahead of its parent, which holds
+   * the classpath and may hold outdated classes of the same names.
+   */
+  private static final class WorkspaceLoader extends GroovyClassLoader {
+    private final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+
+    WorkspaceLoader(GroovyClassLoader parent, CompilerConfiguration configuration) {
+      super(parent, configuration, false);
+    }
+
+    void add(GroovyClass generated) {
+      classes.put(generated.getName(), generated.getBytes());
+    }
+
+    /** Returns the compiled class of the given name, or {@code null} if there is none. */
+    Class<?> workspaceClass(String name) {
+      byte[] bytes = classes.get(name);
+      if (bytes == null) return null;
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> loaded = findLoadedClass(name);
+        return loaded != null ? loaded : defineClass(name, bytes, 0, bytes.length);
+      }
+    }
+
+    @Override
+    public Class<?> loadClass(
+        String name, boolean lookupScriptFiles, boolean preferClassOverScript, boolean resolve)
+        throws ClassNotFoundException, CompilationFailedException {
+      Class<?> type = workspaceClass(name);
+      if (type == null) {
+        return super.loadClass(name, lookupScriptFiles, preferClassOverScript, resolve);
+      }
+      if (resolve) resolveClass(type);
+      return type;
+    }
+  }
+
+  /**
+   * Resolves the classes declared by the validated sources to their compiled classes, or to their
+   * sources if they have not been compiled to classes, and the others through the resolver shared
+   * by all validations. The classes of sources with errors do not resolve; those sources are
+   * recorded as failed dependencies of the unit.
+   */
+  private static final class WorkspaceClassNodeResolver extends ClassNodeResolver {
+    private final SharedClassNodeResolver shared;
+    private final Workspace workspace;
+    final Set<String> failedDependencies = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    WorkspaceClassNodeResolver(SharedClassNodeResolver shared, Workspace workspace) {
+      this.shared = shared;
+      this.workspace = workspace;
+    }
+
+    @Override
+    public LookupResult resolveName(String name, CompilationUnit unit) {
+      Source declaring = workspace.declared.get(name);
+      if (declaring == null) return shared.resolveName(name, unit);
+      if (declaring.errors != null || declaring.component.done && declaring.component.failed) {
+        failedDependencies.add(declaring.file.getPath());
+        return null;
+      }
+      if (declaring.component.done) {
+        Class<?> compiled = workspace.loader.workspaceClass(name);
+        if (compiled != null) return new LookupResult(null, ClassHelper.make(compiled));
+      }
+      // not compiled to classes: queued, the unit analyzes it along once resolution is interrupted
+      SourceUnit source =
+          unit.addSource(
+              new SourceUnit(
+                  declaring.file,
+                  unit.getConfiguration(),
+                  unit.getClassLoader(),
+                  unit.getErrorCollector()));
+      return new LookupResult(source, null);
+    }
+  }
+
+  /** The messages of one validated source. */
+  public static final class Result {
+    private final File file;
+    private final List<Message> errors;
+    private final List<WarningMessage> warnings;
+
+    Result(File file, List<Message> errors, List<WarningMessage> warnings) {
+      this.file = file;
+      this.errors = Collections.unmodifiableList(errors);
+      this.warnings = Collections.unmodifiableList(warnings);
+    }
+
+    public File getFile() {
+      return file;
+    }
+
+    /** Returns true if the source has no errors. */
+    public boolean isValid() {
+      return errors.isEmpty();
+    }
+
+    /** Returns all errors of the source, usually {@link SyntaxErrorMessage}s. */
+    public List<Message> getErrors() {
+      return errors;
+    }
+
+    /** Returns the errors which are {@link SyntaxErrorMessage}s, with their positions. */
+    public List<SyntaxErrorMessage> getSyntaxErrors() {
+      List<SyntaxErrorMessage> syntaxErrors = new ArrayList<>(errors.size());
+      for (Message error : errors) {
+        if (error instanceof SyntaxErrorMessage) syntaxErrors.add((SyntaxErrorMessage) error);
+      }
+      return syntaxErrors;
+    }
+
+    public List<WarningMessage> getWarnings() {
+      return warnings;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.vmplugin;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the classes found in the default import packages, generated at build time by the {@code
+ * generateDefaultImportIndex} task and bundled as {@value #RESOURCE}. It replaces scanning the
+ * runtime's packages, which is slow on the JVM and not possible at all on Android.
+ *
+ * <p>The resource is a {@link java.io.DataOutput} stream: the magic number, the format version, the
+ * number of packages and, for each package, its name (with trailing dot) followed by the number and
+ * simple names of its top-level classes.
+ */
+public final class DefaultImportClassIndex {
+
+  public static final String RESOURCE = "META-INF/groovy/default-import-classes.idx";
+
+  private static final int MAGIC = 0x47444949;
+
+  private static final int VERSION = 1;
+
+  private DefaultImportClassIndex() {}
+
+  /**
+   * Returns the default import classes: class name -&gt; the relevant package names
+   *
+   * @param packageNames the default import package names, e.g. java.lang.
+   * @return the indexed classes, or an empty map if the index is not available
+   */
+  public static Map<String, Set<String>> find(String[] packageNames) {
+    Map<String, String[]> index = Holder.INDEX;
+    if (index.isEmpty()) return Collections.emptyMap();
+
+    Map<String, Set<String>> result = new HashMap<>(2048);
+    for (String packageName : packageNames) {
+      String[] classNames = index.get(packageName);
+      if (classNames == null) continue;
+      for (String className : classNames) {
+        result.computeIfAbsent(className, k -> new HashSet<>(2)).add(packageName);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether the index resource was found and could be read.
+   *
+   * @return {@code true} if {@link #find(String[])} is backed by the bundled index
+   */
+  public static boolean isAvailable() {
+    return !Holder.INDEX.isEmpty();
+  }
+
+  private static Map<String, String[]> load() {
+    try (InputStream in =
+        DefaultImportClassIndex.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+      if (in == null) return Collections.emptyMap();
+
+      DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+      if (data.readInt() != MAGIC || data.readUnsignedShort() != VERSION) {
+        throw new IOException("unrecognized format");
+      }
+      int packageCount = data.readUnsignedShort();
+      Map<String, String[]> index = new HashMap<>(packageCount * 2);
+      for (int i = 0; i < packageCount; i++) {
+        String packageName = data.readUTF();
+        String[] classNames = new String[data.readUnsignedShort()];
+        for (int j = 0; j < classNames.length; j++) {
+          classNames[j] = data.readUTF();
+        }
+        index.put(packageName, classNames);
+      }
+      return Collections.unmodifiableMap(index);
+    } catch (IOException e) {
+      Logger log = Logger.getLogger(DefaultImportClassIndex.class.getName());
+      if (log.isLoggable(Level.FINE)) {
+        log.fine("Failed to read default import class index `" + RESOURCE + "`: " + e);
+      }
+      return Collections.emptyMap();
+    }
+  }
+
+  private static final class Holder {
+    static final Map<String, String[]> INDEX = load();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.vmplugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.groovy.lang.annotation.Incubating;
+
+/**
+ * Immutable description of the components of a record class. Descriptors are computed once per
+ * class and cached, so record heavy code paths (named-argument construction, {@code toMap}, ...)
+ * reflect over {@link Class#getRecordComponents()} only on first access.
+ *
+ * @since 5.0.0
+ */
+@Incubating
+public final class RecordDescriptor {
+
+  private static final RecordDescriptor NONE =
+      new RecordDescriptor(
+          false, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+  private static final ClassValue<RecordDescriptor> CACHE =
+      new ClassValue<RecordDescriptor>() {
+        @Override
+        protected RecordDescriptor computeValue(Class<?> type) {
+          return create(type);
+        }
+      };
+
+  private final boolean record;
+  private final List<String> componentNames;
+  private final List<Class<?>> componentTypes;
+  private final List<MethodHandle> accessors;
+
+  private RecordDescriptor(
+      boolean record,
+      List<String> componentNames,
+      List<Class<?>> componentTypes,
+      List<MethodHandle> accessors) {
+    this.record = record;
+    this.componentNames = componentNames;
+    this.componentTypes = componentTypes;
+    this.accessors = accessors;
+  }
+
+  /**
+   * Returns the descriptor of the given class.
+   *
+   * @param maybeRecord the class in question
+   * @return the cached descriptor, which has no components if the class is not a record or the
+   *     runtime does not support records
+   */
+  public static RecordDescriptor of(Class<?> maybeRecord) {
+    return CACHE.get(maybeRecord);
+  }
+
+  private static RecordDescriptor create(Class<?> type) {
+    RecordComponent[] components;
+    try {
+      if (!type.isRecord()) return NONE;
+      components = type.getRecordComponents();
+    } catch (LinkageError e) { // pre-record runtime, e.g. Android before API level 34
+      return NONE;
+    }
+
+    List<String> names = new ArrayList<>(components.length);
+    List<Class<?>> types = new ArrayList<>(components.length);
+    List<MethodHandle> accessors = new ArrayList<>(components.length);
+    for (RecordComponent component : components) {
+      names.add(component.getName());
+      types.add(component.getType());
+      accessors.add(unreflect(component.getAccessor()));
+    }
+    return new RecordDescriptor(
+        true,
+        Collections.unmodifiableList(names),
+        Collections.unmodifiableList(types),
+        Collections.unmodifiableList(accessors));
+  }
+
+  private static MethodHandle unreflect(Method accessor) {
+    try {
+      return MethodHandles.publicLookup().unreflect(accessor);
+    } catch (IllegalAccessException e) {
+      try {
+        accessor.setAccessible(true);
+        return MethodHandles.lookup().unreflect(accessor);
+      } catch (IllegalAccessException | RuntimeException ignore) {
+        return null;
+      }
+    }
+  }
+
+  /** Returns {@code true} if the described class is a record. */
+  public boolean isRecord() {
+    return record;
+  }
+
+  /** Returns the record component names in declaration order. */
+  public List<String> getComponentNames() {
+    return componentNames;
+  }
+
+  /** Returns the record component types in declaration order. */
+  public List<Class<?>> getComponentTypes() {
+    return componentTypes;
+  }
+
+  /**
+   * Returns the accessor handles in declaration order. An element is {@code null} if the accessor
+   * cannot be accessed from the Groovy runtime.
+   */
+  public List<MethodHandle> getAccessors() {
+    return accessors;
+  }
+}
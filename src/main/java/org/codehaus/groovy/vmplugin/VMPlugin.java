@@ -27,7 +27,6 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Method;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -190,19 +189,22 @@ public interface VMPlugin {
   MetaMethod transformMetaMethod(MetaClass metaClass, MetaMethod metaMethod);
 
   /**
-   * Returns the default import classes: class name -&gt; the relevant package names
+   * Returns the default import classes: class name -&gt; the relevant package names. The default
+   * implementation answers from the build-time {@link DefaultImportClassIndex}, so runtimes which
+   * cannot scan their own packages (e.g. Android) still avoid trial class loading.
    *
    * @param packageNames the default import package names, e.g. java.lang.
    * @return the default import classes
    * @since 3.0.2
    */
   default Map<String, Set<String>> getDefaultImportClasses(String[] packageNames) {
-    return Collections.emptyMap();
+    return DefaultImportClassIndex.find(packageNames);
   }
 
   /**
    * Returns the list of record component names or the empty list if the class is not a record or
-   * running on a pre16 JDK.
+   * running on a pre16 JDK. The default implementation answers from the cached {@link
+   * RecordDescriptor}.
    *
    * @param maybeRecord the class in question
    * @return the default list of names
@@ -210,6 +212,6 @@ public interface VMPlugin {
    */
   @Incubating
   default List<String> getRecordComponentNames(Class<?> maybeRecord) {
-    return Collections.emptyList();
+    return RecordDescriptor.of(maybeRecord).getComponentNames();
   }
 }
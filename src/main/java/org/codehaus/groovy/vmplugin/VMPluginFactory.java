@@ -21,63 +21,97 @@ package org.codehaus.groovy.vmplugin;
 import static org.codehaus.groovy.reflection.android.AndroidSupport.isDalvik;
 import static org.codehaus.groovy.reflection.android.AndroidSupport.isRunningAndroid;
 
-import java.util.Map;
-import org.apache.groovy.util.Maps;
-import org.codehaus.groovy.runtime.DefaultGroovyMethods;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.codehaus.groovy.jfr.GroovyEvents;
+import org.codehaus.groovy.vmplugin.v10.Java10;
+import org.codehaus.groovy.vmplugin.v16.Java16;
+import org.codehaus.groovy.vmplugin.v8.Java8;
 
 /**
  * Factory class to get functionality based on the VM version. The usage of this class is not for
  * public use, only for the runtime.
+ *
+ * <p>The plugins are instantiated directly rather than looked up by name, so creating the plugin
+ * needs neither reflection nor a privileged action and keeps {@code DefaultGroovyMethods} off the
+ * startup path.
+ *
+ * <p>With {@code -Dgroovy.jfr=true}, the selection of the plugin and the invalidation of call sites
+ * are recorded as Flight Recorder events, see {@link GroovyEvents}. Otherwise the plugin is created
+ * as it is and the Flight Recorder is not touched.
  */
 public class VMPluginFactory {
 
-  private static final Map<Integer, String> PLUGIN_MAP =
-      Maps.of(
-          // NOTE: Declare the vm plugin entries in *descending* order!
-          16,
-          "org.codehaus.groovy.vmplugin.v16.Java16",
-          10,
-          "org.codehaus.groovy.vmplugin.v10.Java10",
-          8,
-          "org.codehaus.groovy.vmplugin.v8.Java8");
-
   private static final VMPlugin PLUGIN = createPlugin();
 
   private static VMPlugin createPlugin() {
-    return doPrivileged(
-        () -> {
-          ClassLoader loader = VMPluginFactory.class.getClassLoader();
-          int specVer = (isRunningAndroid() || isDalvik()) ? 8 : Runtime.version().feature();
-          for (Map.Entry<Integer, String> entry : PLUGIN_MAP.entrySet()) {
-            if (specVer >= entry.getKey()) {
-              String fullName = entry.getValue();
-              try {
-                return (VMPlugin) loader.loadClass(fullName).getDeclaredConstructor().newInstance();
-              } catch (Throwable t) {
-                var log = java.util.logging.Logger.getLogger(VMPluginFactory.class.getName());
-                if (log.isLoggable(java.util.logging.Level.FINE)) {
-                  log.fine(
-                      "Trying to create VM plugin `"
-                          + fullName
-                          + "`, but failed:\n"
-                          + DefaultGroovyMethods.asString(t));
-                }
-                return null;
-              }
-            }
-          }
-          return null;
-        });
+    int specVer = (isRunningAndroid() || isDalvik()) ? 8 : Runtime.version().feature();
+    if (!GroovyEvents.isEnabled()) return createPlugin(specVer, false);
+    VMPlugin plugin = createPlugin(specVer, true);
+    GroovyEvents.pluginSelected(plugin, specVer);
+    return plugin;
   }
 
-  @SuppressWarnings(
-      "removal") // TODO a future Groovy version should perform the operation not as a privileged
-  // action
-  private static <T> T doPrivileged(java.security.PrivilegedAction<T> action) {
-    return java.security.AccessController.doPrivileged(action);
+  /**
+   * Creates the plugin for the given Java version, trying the newer plugins first: if one cannot be
+   * linked, the next older one is tried. If the invalidation of call sites is recorded, the plugin
+   * is subclassed to record it. The plugins are returned separately rather than merged in one
+   * expression, so that verifying this method does not load them.
+   */
+  private static VMPlugin createPlugin(int specVer, boolean recordEvents) {
+    // NOTE: Check the vm plugin versions in *descending* order!
+    if (specVer >= 16) {
+      try {
+        if (recordEvents) return new RecordingJava16();
+        return new Java16();
+      } catch (LinkageError e) {
+        logFailure(16, e);
+      }
+    }
+    if (specVer >= 10) {
+      try {
+        if (recordEvents) return new RecordingJava10();
+        return new Java10();
+      } catch (LinkageError e) {
+        logFailure(10, e);
+      }
+    }
+    if (recordEvents) return new RecordingJava8();
+    return new Java8();
+  }
+
+  private static void logFailure(int version, LinkageError e) {
+    Logger log = Logger.getLogger(VMPluginFactory.class.getName());
+    if (log.isLoggable(Level.FINE)) {
+      log.fine("Trying to create VM plugin for Java " + version + ", but failed: " + e);
+    }
   }
 
   public static VMPlugin getPlugin() {
     return PLUGIN;
   }
+
+  /** {@link Java16} recording the invalidation of call sites. */
+  private static final class RecordingJava16 extends Java16 {
+    @Override
+    public void invalidateCallSites() {
+      GroovyEvents.invalidateCallSites(super::invalidateCallSites);
+    }
+  }
+
+  /** {@link Java10} recording the invalidation of call sites. */
+  private static final class RecordingJava10 extends Java10 {
+    @Override
+    public void invalidateCallSites() {
+      GroovyEvents.invalidateCallSites(super::invalidateCallSites);
+    }
+  }
+
+  /** {@link Java8} recording the invalidation of call sites. */
+  private static final class RecordingJava8 extends Java8 {
+    @Override
+    public void invalidateCallSites() {
+      GroovyEvents.invalidateCallSites(super::invalidateCallSites);
+    }
+  }
 }
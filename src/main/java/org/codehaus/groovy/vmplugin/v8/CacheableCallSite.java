@@ -0,0 +1,189 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.vmplugin.v8;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.groovy.util.SystemUtil;
+import org.codehaus.groovy.runtime.memoize.MemoizeCache;
+
+/**
+ * Represents a cacheable call site, which can reduce the cost of resolving methods.
+ *
+ * <p>The cache is guarded by a {@link ReentrantLock} rather than a monitor, and the method is
+ * selected outside of it, so a virtual thread missing the cache neither pins its carrier nor blocks
+ * the other threads calling through the call site.
+ *
+ * <p>When {@link CallSiteProfiler#isEnabled() profiling} is enabled, the relinks, fallbacks and
+ * receiver types of the call site are counted.
+ *
+ * @since 3.0.0
+ */
+public class CacheableCallSite extends MutableCallSite {
+  private static final int CACHE_SIZE =
+      SystemUtil.getIntegerSafe("groovy.indy.callsite.cache.size", 4);
+  private static final float LOAD_FACTOR = 0.75f;
+  private static final int INITIAL_CAPACITY = (int) Math.ceil(CACHE_SIZE / LOAD_FACTOR) + 1;
+  private final MethodHandles.Lookup lookup;
+  private volatile SoftReference<MethodHandleWrapper> latestHitMethodHandleWrapperSoftReference =
+      null;
+  private final AtomicLong fallbackCount = new AtomicLong();
+  private MethodHandle defaultTarget;
+  private MethodHandle fallbackTarget;
+  private final Map<String, SoftReference<MethodHandleWrapper>> lruCache =
+      new LinkedHashMap<String, SoftReference<MethodHandleWrapper>>(
+          INITIAL_CAPACITY, LOAD_FACTOR, true) {
+        private static final long serialVersionUID = 7785958879964294463L;
+
+        @Override
+        protected boolean removeEldestEntry(
+            Map.Entry<String, SoftReference<MethodHandleWrapper>> eldest) {
+          return size() > CACHE_SIZE;
+        }
+      };
+  private final ReentrantLock lruCacheLock = new ReentrantLock();
+  /** Looked up when the initial target is set, if profiling. */
+  private volatile CallSiteProfiler.Profile profile;
+
+  public CacheableCallSite(MethodType type, MethodHandles.Lookup lookup) {
+    super(type);
+    this.lookup = lookup;
+  }
+
+  private CallSiteProfiler.Profile profile() {
+    CallSiteProfiler.Profile current = profile;
+    if (null == current) profile = current = CallSiteProfiler.profileOf(this);
+    return current;
+  }
+
+  public MethodHandleWrapper getAndPut(
+      String className,
+      MemoizeCache.ValueProvider<? super String, ? extends MethodHandleWrapper> valueProvider) {
+    MethodHandleWrapper result = null;
+    SoftReference<MethodHandleWrapper> resultSoftReference;
+    lruCacheLock.lock();
+    try {
+      resultSoftReference = lruCache.get(className);
+      if (null != resultSoftReference) {
+        result = resultSoftReference.get();
+        if (null == result) removeAllStaleEntriesOfLruCache();
+      }
+    } finally {
+      lruCacheLock.unlock();
+    }
+
+    if (null == result) {
+      if (CallSiteProfiler.isEnabled()) profile().cacheMiss(className);
+      // selecting the method may load classes, so it runs without the lock; a thread missing at
+      // the same time may select it too, the first one cached wins
+      MethodHandleWrapper provided = valueProvider.provide(className);
+      lruCacheLock.lock();
+      try {
+        resultSoftReference = lruCache.get(className);
+        if (null != resultSoftReference) result = resultSoftReference.get();
+        if (null == result) {
+          result = provided;
+          resultSoftReference = new SoftReference<>(result);
+          lruCache.put(className, resultSoftReference);
+        }
+      } finally {
+        lruCacheLock.unlock();
+      }
+    }
+    final SoftReference<MethodHandleWrapper> mhwsr = latestHitMethodHandleWrapperSoftReference;
+    final MethodHandleWrapper methodHandleWrapper = null == mhwsr ? null : mhwsr.get();
+
+    if (methodHandleWrapper == result) {
+      result.incrementLatestHitCount();
+    } else {
+      result.resetLatestHitCount();
+      if (null != methodHandleWrapper) methodHandleWrapper.resetLatestHitCount();
+      latestHitMethodHandleWrapperSoftReference = resultSoftReference;
+    }
+
+    return result;
+  }
+
+  public MethodHandleWrapper put(String name, MethodHandleWrapper mhw) {
+    lruCacheLock.lock();
+    try {
+      final SoftReference<MethodHandleWrapper> methodHandleWrapperSoftReference =
+          lruCache.put(name, new SoftReference<>(mhw));
+      if (null == methodHandleWrapperSoftReference) return null;
+      final MethodHandleWrapper methodHandleWrapper = methodHandleWrapperSoftReference.get();
+      if (null == methodHandleWrapper) removeAllStaleEntriesOfLruCache();
+      return methodHandleWrapper;
+    } finally {
+      lruCacheLock.unlock();
+    }
+  }
+
+  private void removeAllStaleEntriesOfLruCache() {
+    lruCache.values().removeIf(v -> null == v.get());
+  }
+
+  public long incrementFallbackCount() {
+    if (CallSiteProfiler.isEnabled()) profile().fallback();
+    return fallbackCount.incrementAndGet();
+  }
+
+  public void resetFallbackCount() {
+    fallbackCount.set(0);
+  }
+
+  @Override
+  public void setTarget(MethodHandle newTarget) {
+    if (CallSiteProfiler.isEnabled()) {
+      // the initial target is set while bootstrapping, it is not a relink
+      if (null == profile) {
+        profile = CallSiteProfiler.profileOf(this);
+      } else {
+        profile.relinked();
+      }
+    }
+    super.setTarget(newTarget);
+  }
+
+  public MethodHandle getDefaultTarget() {
+    return defaultTarget;
+  }
+
+  public void setDefaultTarget(MethodHandle defaultTarget) {
+    this.defaultTarget = defaultTarget;
+  }
+
+  public MethodHandle getFallbackTarget() {
+    return fallbackTarget;
+  }
+
+  public void setFallbackTarget(MethodHandle fallbackTarget) {
+    this.fallbackTarget = fallbackTarget;
+  }
+
+  public MethodHandles.Lookup getLookup() {
+    return lookup;
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.codehaus.groovy.vmplugin.v8;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.groovy.util.SystemUtil;
+
+/**
+ * Opt-in profiler of the indy call sites, those of classes compiled with {@link
+ * org.codehaus.groovy.control.CompilerConfiguration#isIndyEnabled() invokedynamic}, to find the
+ * dynamic dispatch sites worth fixing. Enabled with {@code -Dgroovy.indy.profile=true}, it counts
+ * for every {@link CacheableCallSite}
+ *
+ * <ul>
+ *   <li>the relinks, that is every target set after the initial one,
+ *   <li>the fallbacks, the calls which went through method selection,
+ *   <li>the cache misses and the receiver types seen on them; a call site with more receiver types
+ *       than its cache holds ({@code groovy.indy.callsite.cache.size}) is megamorphic.
+ * </ul>
+ *
+ * Only the slow paths are counted, calls through a linked target cost nothing extra. A call site
+ * looks its profile up on its first slow path, when its target is first set, from the source
+ * position on the stack. The profiles are kept by class name, method and bytecode index, so the
+ * call sites of a script compiled again under the same name share theirs, and at most {@value
+ * #MAX_PROFILES} are kept; the slow calls of the call sites beyond are only counted in total. The
+ * ranked report is written by {@link #writeReport(Writer, int)}, or at exit to the file named by
+ * {@code groovy.indy.profile.report}.
+ */
+public final class CallSiteProfiler {
+
+  private static final boolean ENABLED = SystemUtil.getBooleanSafe("groovy.indy.profile");
+
+  private static final int CACHE_SIZE =
+      SystemUtil.getIntegerSafe("groovy.indy.callsite.cache.size", 4);
+
+  /** Receiver types recorded per call site, enough to tell a megamorphic site. */
+  private static final int MAX_RECEIVER_TYPES = 32;
+
+  /** Profiles kept, to bound the memory of long-running processes. */
+  private static final int MAX_PROFILES = 10_000;
+
+  private static final Map<String, Profile> PROFILES = new ConcurrentHashMap<>();
+
+  /** Shared by the call sites beyond {@link #MAX_PROFILES}, not listed. */
+  private static final Profile UNLISTED = new Profile("", null, null);
+
+  private static final Comparator<Profile> RANKING =
+      Comparator.comparingLong(Profile::getSlowPathCount)
+          .thenComparingInt(Profile::getReceiverTypeCount)
+          .reversed();
+
+  static {
+    String reportFile = SystemUtil.getSystemPropertySafe("groovy.indy.profile.report");
+    if (ENABLED && reportFile != null) {
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread(
+                  () -> {
+                    try (Writer out =
+                        Files.newBufferedWriter(Paths.get(reportFile), StandardCharsets.UTF_8)) {
+                      writeReport(out, Integer.MAX_VALUE);
+                    } catch (IOException e) {
+                      Logger log = Logger.getLogger(CallSiteProfiler.class.getName());
+                      if (log.isLoggable(Level.WARNING)) {
+                        log.warning("Failed to write the call site report: " + e);
+                      }
+                    }
+                  },
+                  "groovy-indy-profile-report"));
+    }
+  }
+
+  private CallSiteProfiler() {}
+
+  /** Returns true if call sites are profiled, see {@code groovy.indy.profile}. */
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Returns the profile of the given call site, called on its first slow path, while the class
+   * holding the call site is on the stack.
+   */
+  static Profile profileOf(CacheableCallSite callSite) {
+    String sender = callSite.getLookup().lookupClass().getName();
+    MethodType type = callSite.type();
+    StackWalker.StackFrame position =
+        StackWalker.getInstance()
+            .walk(
+                frames ->
+                    frames
+                        .filter(frame -> frame.getClassName().equals(sender))
+                        .findFirst()
+                        .orElse(null));
+    String key =
+        position == null
+            ? sender + " " + type
+            : sender
+                + "."
+                + position.getMethodName()
+                + position.getDescriptor()
+                + "@"
+                + position.getByteCodeIndex()
+                + " "
+                + type;
+    Profile profile = PROFILES.get(key);
+    if (profile != null) return profile;
+    // racing call sites may go a few past the bound
+    if (PROFILES.size() >= MAX_PROFILES) return UNLISTED;
+    Profile created = new Profile(sender, type, position);
+    profile = PROFILES.putIfAbsent(key, created);
+    return profile != null ? profile : created;
+  }
+
+  /**
+   * Returns the profiles of the call sites seen so far, the worst first: the most calls taking a
+   * slow path, then the most receiver types.
+   */
+  public static List<Profile> getProfiles() {
+    List<Profile> profiles = new ArrayList<>(PROFILES.values());
+    profiles.sort(RANKING);
+    return profiles;
+  }
+
+  /**
+   * Writes the profiles of the call sites which relinked, fell back or missed their cache, the
+   * worst first.
+   *
+   * @param out the writer to write to
+   * @param limit the maximum number of call sites to list
+   */
+  public static void writeReport(Writer out, int limit) {
+    List<Profile> profiles = getProfiles();
+    profiles.removeIf(p -> p.getSlowPathCount() == 0);
+    PrintWriter writer = new PrintWriter(out);
+    writer.printf(
+        "%d of %d indy call sites relinked, fell back or missed their cache%n",
+        profiles.size(), PROFILES.size());
+    if (UNLISTED.getSlowPathCount() > 0) {
+      writer.printf(
+          "%d slow calls of call sites beyond the first %d are not listed%n",
+          UNLISTED.getSlowPathCount(), MAX_PROFILES);
+    }
+    writer.printf(
+        "%8s %10s %8s %9s  %s%n", "relinks", "fallbacks", "misses", "receivers", "call site");
+    for (Profile profile : profiles.subList(0, Math.min(limit, profiles.size()))) {
+      int receivers = profile.getReceiverTypeCount();
+      writer.printf(
+          "%8d %10d %8d %9s  %s%s%n",
+          profile.getRelinks(),
+          profile.getFallbacks(),
+          profile.getCacheMisses(),
+          receivers >= MAX_RECEIVER_TYPES ? receivers + "+" : String.valueOf(receivers),
+          profile,
+          profile.isMegamorphic() ? " megamorphic" : "");
+    }
+    writer.flush();
+  }
+
+  /** The counters of one call site, or of the call sites at the same source position. */
+  public static final class Profile {
+    private final String sender;
+    private final MethodType type;
+    private final StackWalker.StackFrame position;
+    private final AtomicLong relinks = new AtomicLong();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Set<String> receiverTypes = ConcurrentHashMap.newKeySet();
+
+    Profile(String sender, MethodType type, StackWalker.StackFrame position) {
+      this.sender = sender;
+      this.type = type;
+      this.position = position;
+    }
+
+    void relinked() {
+      relinks.incrementAndGet();
+    }
+
+    void fallback() {
+      fallbacks.increment();
+    }
+
+    void cacheMiss(String receiverType) {
+      misses.increment();
+      // racing misses may go a few past the bound
+      if (receiverTypes.size() < MAX_RECEIVER_TYPES) receiverTypes.add(receiverType);
+    }
+
+    /** Returns the name of the class holding the call site. */
+    public String getSender() {
+      return sender;
+    }
+
+    public MethodType getType() {
+      return type;
+    }
+
+    /** Returns the source file of the call site, or {@code null} if not known. */
+    public String getSourceFile() {
+      return position != null ? position.getFileName() : null;
+    }
+
+    /** Returns the line of the call site, or -1 if not known. */
+    public int getLineNumber() {
+      return position != null ? position.getLineNumber() : -1;
+    }
+
+    /** Returns the targets set after the initial one. */
+    public long getRelinks() {
+      return relinks.get();
+    }
+
+    public long getFallbacks() {
+      return fallbacks.sum();
+    }
+
+    public long getCacheMisses() {
+      return misses.sum();
+    }
+
+    /** Returns the calls which took a slow path: relinks, fallbacks and cache misses. */
+    public long getSlowPathCount() {
+      return getRelinks() + getFallbacks() + getCacheMisses();
+    }
+
+    /** Returns the number of receiver types seen, at most {@value #MAX_RECEIVER_TYPES}. */
+    public int getReceiverTypeCount() {
+      return Math.min(receiverTypes.size(), MAX_RECEIVER_TYPES);
+    }
+
+    /** Returns true if the call site has seen more receiver types than its cache holds. */
+    public boolean isMegamorphic() {
+      return getReceiverTypeCount() > CACHE_SIZE;
+    }
+
+    /** Returns the source position, method and type of the call site. */
+    @Override
+    public String toString() {
+      if (position == null) return sender + " " + type;
+      return position.getFileName()
+          + ":"
+          + position.getLineNumber()
+          + " "
+          + sender
+          + "."
+          + position.getMethodName()
+          + " "
+          + type;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+// Training workload of the CDS archive (see gradle/cds.gradle): compiles and runs a few
+// representative sources so that the archive covers the compiler and the script runtime.
+
+import org.codehaus.groovy.control.CompilationUnit
+import org.codehaus.groovy.control.CompilerConfiguration
+import org.codehaus.groovy.control.Phases
+
+def sources = [
+    script : '''
+        def items = (1..20).collect { [id: it, name: "item$it"] }
+        items.findAll { it.id % 2 == 0 }*.name.join(', ')
+    ''',
+    classes: '''
+        import groovy.transform.*
+        @ToString @EqualsAndHashCode
+        class Person {
+            String name
+            int age
+            boolean isAdult() { age >= 18 }
+        }
+        def people = [new Person(name: 'Ada', age: 36), new Person(name: 'Tim', age: 12)]
+        people.findAll { it.adult }.collect { it.toString() }
+    ''',
+    static : '''
+        import groovy.transform.CompileStatic
+        @CompileStatic
+        class Fibonacci {
+            static long of(int n) {
+                long a = 0, b = 1
+                for (int i = 0; i < n; i++) { long t = a + b; a = b; b = t }
+                return a
+            }
+        }
+        Fibonacci.of(50)
+    ''',
+]
+
+def config = new CompilerConfiguration(CompilerConfiguration.DEFAULT)
+sources.each { name, text ->
+    def unit = new CompilationUnit(config)
+    unit.addSource("${name}.groovy", text)
+    unit.compile(Phases.CLASS_GENERATION)
+}
+
+def shell = new GroovyShell(config)
+sources.each { name, text -> println "$name: ${shell.evaluate(text)}" }
@@ -0,0 +1,190 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.groovy.bench;
+
+import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.reflection.android.AndroidSupport;
+import org.codehaus.groovy.vmplugin.VMPluginFactory;
+
+/**
+ * Measures the time from JVM start to the first evaluated script, broken down by startup phase.
+ * Every sample is taken in a fresh JVM, forked with the classpath and JVM arguments of the driver:
+ *
+ * <pre>
+ * java -cp ... org.apache.groovy.bench.StartupBenchmark [forks] [--trace &lt;file&gt;]
+ * </pre>
+ *
+ * With {@code --trace}, one more JVM is forked with {@code -Xlog:class+load} writing the classes it
+ * loads, in order, to the given file. It is not part of the timings.
+ */
+public class StartupBenchmark {
+
+  private static final String CHILD = "--child";
+
+  private static final String TRACE = "--trace";
+
+  private static final String PHASE = "phase ";
+
+  private static final String SCRIPT = "def greet(name) { \"Hello, $name\" }; greet('Groovy')";
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && CHILD.equals(args[0])) {
+      runChild();
+      return;
+    }
+
+    int forks = 10;
+    String trace = null;
+    for (int i = 0; i < args.length; i++) {
+      if (TRACE.equals(args[i])) {
+        trace = args[++i];
+      } else {
+        forks = Integer.parseInt(args[i]);
+      }
+    }
+
+    Map<String, List<long[]>> samples = new LinkedHashMap<>();
+    for (int i = 0; i < forks; i++) {
+      fork(null)
+          .forEach(
+              (phase, sample) ->
+                  samples.computeIfAbsent(phase, k -> new ArrayList<>()).add(sample));
+    }
+
+    System.out.printf("startup phases, median of %d forks:%n", forks);
+    for (Map.Entry<String, List<long[]>> entry : samples.entrySet()) {
+      System.out.printf(
+          "  %-24s %8.1f ms %8d classes%n",
+          entry.getKey(), median(entry.getValue(), 0) / 1000.0, median(entry.getValue(), 1));
+    }
+
+    if (trace != null) {
+      File file = new File(trace).getAbsoluteFile();
+      file.getParentFile().mkdirs();
+      fork("-Xlog:class+load=info:file=" + file.getPath());
+      System.out.println("class loading trace written to " + file);
+    }
+  }
+
+  private static long median(List<long[]> samples, int index) {
+    List<Long> values = new ArrayList<>(samples.size());
+    for (long[] sample : samples) values.add(sample[index]);
+    Collections.sort(values);
+    return values.get(values.size() / 2);
+  }
+
+  /** Runs the phases in order, printing the elapsed microseconds and classes loaded by each. */
+  private static void runChild() throws Exception {
+    ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+    long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+    report("jvm", uptime * 1000, classLoading.getTotalLoadedClassCount());
+
+    Phase phase = new Phase(classLoading);
+    Class.forName(AndroidSupport.class.getName(), true, StartupBenchmark.class.getClassLoader());
+    phase.end("AndroidSupport");
+
+    VMPluginFactory.getPlugin();
+    phase.end("VMPluginFactory");
+
+    CompilerConfiguration configuration = CompilerConfiguration.DEFAULT;
+    phase.end("CompilerConfiguration");
+
+    Script script = new GroovyShell(configuration).parse(SCRIPT);
+    phase.end("first compile");
+
+    Object result = script.run();
+    phase.end("first run");
+    if (!"Hello, Groovy".equals(String.valueOf(result))) {
+      throw new IllegalStateException("unexpected script result: " + result);
+    }
+
+    report(
+        "first script (total)",
+        ManagementFactory.getRuntimeMXBean().getUptime() * 1000,
+        classLoading.getTotalLoadedClassCount());
+  }
+
+  private static void report(String phase, long micros, long classes) {
+    System.out.println(PHASE + micros + ' ' + classes + ' ' + phase);
+  }
+
+  private static final class Phase {
+    private final ClassLoadingMXBean classLoading;
+    private long start = System.nanoTime();
+    private long classes;
+
+    Phase(ClassLoadingMXBean classLoading) {
+      this.classLoading = classLoading;
+      this.classes = classLoading.getTotalLoadedClassCount();
+    }
+
+    void end(String name) {
+      long now = System.nanoTime();
+      long loaded = classLoading.getTotalLoadedClassCount();
+      report(name, (now - start) / 1000, loaded - classes);
+      start = System.nanoTime();
+      classes = classLoading.getTotalLoadedClassCount();
+    }
+  }
+
+  private static Map<String, long[]> fork(String extraJvmArgument) throws Exception {
+    List<String> command = new ArrayList<>();
+    command.add(ProcessHandle.current().info().command().orElse("java"));
+    command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+    if (extraJvmArgument != null) command.add(extraJvmArgument);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(StartupBenchmark.class.getName());
+    command.add(CHILD);
+
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    Map<String, long[]> phases = new LinkedHashMap<>();
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(PHASE)) {
+          String[] parts = line.substring(PHASE.length()).split(" ", 3);
+          phases.put(parts[2], new long[] {Long.parseLong(parts[0]), Long.parseLong(parts[1])});
+        } else {
+          System.err.println(line);
+        }
+      }
+    }
+    if (process.waitFor() != 0 || phases.isEmpty()) {
+      throw new IllegalStateException(
+          "startup fork failed with exit code " + process.exitValue() + ": " + command);
+    }
+    return phases;
+  }
+}